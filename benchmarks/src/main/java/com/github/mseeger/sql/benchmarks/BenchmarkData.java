@@ -0,0 +1,109 @@
+package com.github.mseeger.sql.benchmarks;
+
+import com.github.mseeger.sql.ConnectionConfig;
+import com.github.mseeger.sql.queries.FilmsInStock;
+
+import javax.sql.rowset.RowSetMetaDataImpl;
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.SplittableRandom;
+
+/**
+ * Synthetic data shared by the benchmarks. Generation is deterministic.
+ */
+class BenchmarkData {
+    private static final long seed = 31415;
+
+    static ArrayList<FilmsInStock> filmsInStock(int numRows) {
+        var random = new SplittableRandom(seed);
+        var result = new ArrayList<FilmsInStock>(numRows);
+        for (int i = 0; i < numRows; i++)
+            result.add(new FilmsInStock(i + 1, randomTitle(random), random.nextInt(1, 10)));
+        return result;
+    }
+
+    /**
+     * Only the methods used by the row mappers are supported, all others
+     * throw `SQLFeatureNotSupportedException`. There are no null values.
+     *
+     * @return In-memory result set with columns `film_id`, `title`,
+     * `num_in_stock`, positioned before the first row
+     */
+    static ResultSet filmsInStockResultSet(int numRows) throws SQLException {
+        var metaData = new RowSetMetaDataImpl();
+        metaData.setColumnCount(3);
+        setColumn(metaData, 1, "film_id", Types.INTEGER);
+        setColumn(metaData, 2, "title", Types.VARCHAR);
+        setColumn(metaData, 3, "num_in_stock", Types.INTEGER);
+        var filmIDs = new int[numRows];
+        var titles = new String[numRows];
+        var numsInStock = new int[numRows];
+        var entities = filmsInStock(numRows);
+        for (int i = 0; i < numRows; i++) {
+            var entity = entities.get(i);
+            filmIDs[i] = entity.getFilmID();
+            titles[i] = entity.getTitle();
+            numsInStock[i] = entity.getNumInStock();
+        }
+        int[] row = {0};
+        boolean[] closed = {false};
+        return (ResultSet) Proxy.newProxyInstance(
+                ResultSet.class.getClassLoader(),
+                new Class<?>[]{ResultSet.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "next" -> ++row[0] <= numRows;
+                    case "beforeFirst" -> {
+                        row[0] = 0;
+                        yield null;
+                    }
+                    case "getInt" -> (Integer) args[0] == 1 ? filmIDs[row[0] - 1] : numsInStock[row[0] - 1];
+                    case "getString" -> titles[row[0] - 1];
+                    case "wasNull" -> false;
+                    case "getMetaData" -> metaData;
+                    case "close" -> {
+                        closed[0] = true;
+                        yield null;
+                    }
+                    case "isClosed" -> closed[0];
+                    case "equals" -> proxy == args[0];
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "toString" -> "FilmsInStockResultSet";
+                    default -> throw new SQLFeatureNotSupportedException(method.getName());
+                }
+        );
+    }
+
+    /**
+     * Connection to a local database, configured by system properties
+     * `benchmark.user`, `benchmark.password`, `benchmark.database`,
+     * `benchmark.host` and `benchmark.port`.
+     */
+    static ConnectionConfig connectionConfig() {
+        return new ConnectionConfig(
+                System.getProperty("benchmark.user", "root"),
+                System.getProperty("benchmark.password", ""),
+                System.getProperty("benchmark.database", "sakila"),
+                Integer.parseInt(System.getProperty("benchmark.port", String.valueOf(ConnectionConfig.defaultPort))),
+                System.getProperty("benchmark.host", ConnectionConfig.defaultHost)
+        );
+    }
+
+    private static void setColumn(RowSetMetaDataImpl metaData, int index, String name, int type) throws SQLException {
+        metaData.setColumnName(index, name);
+        metaData.setColumnLabel(index, name);
+        metaData.setColumnType(index, type);
+        metaData.setSigned(index, type == Types.INTEGER);
+    }
+
+    private static String randomTitle(SplittableRandom random) {
+        int length = random.nextInt(8, 28);
+        var title = new StringBuilder(length);
+        for (int i = 0; i < length; i++)
+            title.append((char) ('A' + random.nextInt(26)));
+        return title.toString();
+    }
+}
@@ -0,0 +1,84 @@
+package com.github.mseeger.sql.benchmarks;
+
+import com.github.mseeger.sql.QueryExecutor;
+import com.github.mseeger.sql.RowMapper;
+import com.github.mseeger.sql.SQLQuery;
+import com.github.mseeger.sql.queries.FilmsInStock;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end `QueryExecutor.run` against a local database with the Sakila
+ * schema (see `BenchmarkData.connectionConfig` for how to configure it),
+ * with a connection pool (`pooled = true`) and with a new connection per
+ * query.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QueryExecutorBenchmark {
+    private static final String queryString = """
+            SELECT f.film_id, f.title, COUNT(*)
+              FROM film AS f
+              JOIN inventory AS i
+                ON f.film_id = i.film_id
+             WHERE f.film_id <= ?
+             GROUP BY f.film_id
+             ORDER BY f.film_id
+            """;
+    private static final RowMapper<FilmsInStock> rowMapper = resultSet ->
+            new FilmsInStock(resultSet.getInt(1), resultSet.getString(2), resultSet.getInt(3));
+
+    @Param({"true", "false"})
+    public boolean pooled;
+
+    @Param({"10", "1000"})
+    public int maxFilmID;
+
+    private QueryExecutor<FilmsInStock> queryExecutor;
+    private SQLQuery query;
+
+    @Setup
+    public void setup() {
+        queryExecutor = new QueryExecutor<>(BenchmarkData.connectionConfig(), pooled);
+        query = new SQLQuery() {
+            @Override
+            protected String getQueryString() {
+                return queryString;
+            }
+
+            @Override
+            protected void imputeParameters(PreparedStatement statement) throws SQLException {
+                statement.setInt(1, maxFilmID);
+            }
+        };
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        queryExecutor.close();
+    }
+
+    @Benchmark
+    public ArrayList<FilmsInStock> run() throws SQLException {
+        return queryExecutor.run(query, rowMapper);
+    }
+}
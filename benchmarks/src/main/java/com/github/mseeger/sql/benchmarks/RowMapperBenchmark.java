@@ -0,0 +1,77 @@
+package com.github.mseeger.sql.benchmarks;
+
+import com.github.mseeger.sql.ColumnarResult;
+import com.github.mseeger.sql.EntityRowMapper;
+import com.github.mseeger.sql.RowMapper;
+import com.github.mseeger.sql.queries.FilmsInStock;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-row mapping over an in-memory result set, comparing a hand-written
+ * row mapper (as in `FilmsInStockQuery`) with `EntityRowMapper` and with
+ * filling a `ColumnarResult`. Scores are rows per second. Run with the GC
+ * profiler to compare allocations per row.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RowMapperBenchmark {
+    private static final int numRows = 10000;
+
+    private static final RowMapper<FilmsInStock> handWritten = resultSet ->
+            new FilmsInStock(resultSet.getInt(1), resultSet.getString(2), resultSet.getInt(3));
+
+    private ResultSet resultSet;
+    private RowMapper<FilmsInStock> entityRowMapper;
+
+    @Setup
+    public void setup() throws SQLException {
+        resultSet = BenchmarkData.filmsInStockResultSet(numRows);
+        entityRowMapper = EntityRowMapper.forEntityType(FilmsInStock.class);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(numRows)
+    public void handWritten(Blackhole blackhole) throws SQLException {
+        mapAll(handWritten, blackhole);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(numRows)
+    public void entityRowMapper(Blackhole blackhole) throws SQLException {
+        mapAll(entityRowMapper, blackhole);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(numRows)
+    public ColumnarResult columnar() throws SQLException {
+        resultSet.beforeFirst();
+        return ColumnarResult.from(resultSet);
+    }
+
+    private void mapAll(RowMapper<FilmsInStock> rowMapper, Blackhole blackhole) throws SQLException {
+        resultSet.beforeFirst();
+        // As in `QueryExecutor.run`
+        var mapper = rowMapper.forResultSet(resultSet);
+        while (resultSet.next())
+            blackhole.consume(mapper.map(resultSet));
+    }
+}
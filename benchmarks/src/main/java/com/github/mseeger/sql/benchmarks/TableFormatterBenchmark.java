@@ -0,0 +1,89 @@
+package com.github.mseeger.sql.benchmarks;
+
+import com.github.mseeger.sql.TableFormatter;
+import com.github.mseeger.sql.queries.FilmsInStock;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Formatting a query result as table, materialized (`asString`) and
+ * streaming (`write`). `asString` is run sequentially and in parallel, use
+ * `-Djava.util.concurrent.ForkJoinPool.common.parallelism` in order to
+ * measure scaling with the number of cores.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+public class TableFormatterBenchmark {
+    @Param({"1000", "100000", "1000000"})
+    public int numRows;
+
+    private ArrayList<FilmsInStock> queryResult;
+
+    @Setup
+    public void setup() {
+        queryResult = BenchmarkData.filmsInStock(numRows);
+    }
+
+    @Benchmark
+    public String asString() {
+        return TableFormatter.asString(queryResult, new HashMap<>(), Integer.MAX_VALUE);
+    }
+
+    @Benchmark
+    public String asStringParallel() {
+        return TableFormatter.asString(queryResult, new HashMap<>(), 0);
+    }
+
+    @Benchmark
+    public void writeTwoPass(Blackhole blackhole) throws IOException {
+        TableFormatter.write(new BlackholeAppendable(blackhole), queryResult, new HashMap<>());
+    }
+
+    @Benchmark
+    public void writeSampled(Blackhole blackhole) throws IOException {
+        TableFormatter.write(new BlackholeAppendable(blackhole), queryResult.stream());
+    }
+
+    /**
+     * Consumes output without storing it.
+     */
+    private record BlackholeAppendable(Blackhole blackhole) implements Appendable {
+        @Override
+        public Appendable append(CharSequence csq) {
+            blackhole.consume(csq);
+            return this;
+        }
+
+        @Override
+        public Appendable append(CharSequence csq, int start, int end) {
+            blackhole.consume(csq);
+            blackhole.consume(end - start);
+            return this;
+        }
+
+        @Override
+        public Appendable append(char c) {
+            blackhole.consume(c);
+            return this;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.github.mseeger.sql.loadgen;
+
+import com.github.mseeger.sql.queries.FilmsInStockQuery;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.SplittableRandom;
+
+/**
+ * Calls `FilmsInStockQuery.run(int, LocalDateTime)` with store IDs drawn
+ * uniformly from 1, ..., `numStores` and reference times drawn uniformly
+ * from [`from`, `to`).
+ */
+public class FilmsInStockWorkload implements Workload {
+    /**
+     * Range of rental dates in the Sakila sample database.
+     */
+    public static final LocalDateTime defaultFrom = LocalDateTime.of(2005, 5, 24, 0, 0);
+    public static final LocalDateTime defaultTo = LocalDateTime.of(2006, 2, 15, 0, 0);
+
+    private final FilmsInStockQuery query;
+    private final int numStores;
+    private final LocalDateTime from;
+    private final long rangeSeconds;
+
+    /**
+     * @param query Query to run
+     * @param numStores Store IDs are 1, ..., `numStores`
+     * @param from Start of range for reference times
+     * @param to End of range for reference times (exclusive)
+     */
+    public FilmsInStockWorkload(
+            FilmsInStockQuery query,
+            int numStores,
+            LocalDateTime from,
+            LocalDateTime to
+    ) {
+        if (numStores < 1)
+            throw new IllegalArgumentException("numStores = " + numStores + ", must be positive");
+        this.query = query;
+        this.numStores = numStores;
+        this.from = from;
+        this.rangeSeconds = Duration.between(from, to).toSeconds();
+        if (rangeSeconds < 1)
+            throw new IllegalArgumentException("to must be after from");
+    }
+
+    public FilmsInStockWorkload(FilmsInStockQuery query, int numStores) {
+        this(query, numStores, defaultFrom, defaultTo);
+    }
+
+    @Override
+    public String getName() {
+        return "FilmsInStockQuery";
+    }
+
+    @Override
+    public Request nextRequest(SplittableRandom random) {
+        int storeID = 1 + random.nextInt(numStores);
+        var referenceDateTime = from.plusSeconds(random.nextLong(rangeSeconds));
+        return () -> query.run(storeID, referenceDateTime);
+    }
+}
@@ -0,0 +1,114 @@
+package com.github.mseeger.sql.loadgen;
+
+import com.github.mseeger.sql.ConnectionConfig;
+import com.github.mseeger.sql.ConnectionPool;
+import com.github.mseeger.sql.ConnectionPoolConfig;
+import com.github.mseeger.sql.ConnectionSource;
+import com.github.mseeger.sql.QueryExecutor;
+import com.github.mseeger.sql.queries.FilmsInStock;
+import com.github.mseeger.sql.queries.FilmsInStockQuery;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+
+/**
+ * Runs `FilmsInStockWorkload` with `OpenLoopDriver`, prints a summary and
+ * writes a JSON report (see `LoadReport`). Configured by system properties:
+ * <ul>
+ *     <li>`loadgen.target`: "simulated" (default) for
+ *     `SimulatedConnectionSource`, or "mysql" for a database with the
+ *     Sakila schema</li>
+ *     <li>`loadgen.rate`: Target rate in requests per second (200)</li>
+ *     <li>`loadgen.threads`: Number of worker threads (32)</li>
+ *     <li>`loadgen.warmup`, `loadgen.duration`: Periods in seconds (10, 60)</li>
+ *     <li>`loadgen.seed`: Seed for request parameters</li>
+ *     <li>`loadgen.stores`: Number of stores (2)</li>
+ *     <li>`loadgen.report`: Path of JSON report (loadgen-report.json)</li>
+ *     <li>`loadgen.label`: Free-form label written to the report, such as
+ *     the version under test</li>
+ *     <li>`loadgen.user`, `loadgen.password`, `loadgen.database`,
+ *     `loadgen.host`, `loadgen.port`, `loadgen.poolSize`: Database
+ *     connection for target "mysql". The pool size defaults to the number
+ *     of threads</li>
+ *     <li>`loadgen.simulated.capacity`, `loadgen.simulated.serviceMillis`,
+ *     `loadgen.simulated.rows`: Parameters of `SimulatedConnectionSource`</li>
+ * </ul>
+ */
+public class LoadGenerator {
+    static final long defaultSeed = 31415;
+
+    public static void main(String[] args) throws InterruptedException, IOException, SQLException {
+        String target = System.getProperty("loadgen.target", "simulated");
+        double rate = Double.parseDouble(System.getProperty("loadgen.rate", "200"));
+        int numThreads = intProperty("loadgen.threads", 32);
+        var warmup = Duration.ofSeconds(intProperty("loadgen.warmup", 10));
+        var duration = Duration.ofSeconds(intProperty("loadgen.duration", 60));
+        long seed = Long.parseLong(System.getProperty("loadgen.seed", String.valueOf(defaultSeed)));
+        int numStores = intProperty("loadgen.stores", 2);
+        var reportPath = Path.of(System.getProperty("loadgen.report", "loadgen-report.json"));
+
+        LoadReport report;
+        try (var connectionSource = connectionSource(target, numThreads)) {
+            var executor = new QueryExecutor<FilmsInStock>(connectionSource);
+            var workload = new FilmsInStockWorkload(new FilmsInStockQuery(executor), numStores);
+            report = new OpenLoopDriver(workload, rate, numThreads).run(warmup, duration, seed);
+        }
+
+        report.printSummary(System.out);
+        var labels = new LinkedHashMap<String, String>();
+        labels.put("target", target);
+        labels.put("finishedAt", Instant.now().toString());
+        labels.put("javaVersion", System.getProperty("java.version"));
+        var label = System.getProperty("loadgen.label");
+        if (label != null)
+            labels.put("label", label);
+        try (var out = Files.newBufferedWriter(reportPath, StandardCharsets.UTF_8)) {
+            report.writeJson(out, labels);
+        }
+        System.out.println("Report written to " + reportPath.toAbsolutePath());
+    }
+
+    private static ConnectionSource connectionSource(String target, int numThreads) {
+        return switch (target) {
+            case "simulated" -> new SimulatedConnectionSource(
+                    intProperty("loadgen.simulated.capacity", SimulatedConnectionSource.defaultCapacity),
+                    Duration.ofMillis(intProperty(
+                            "loadgen.simulated.serviceMillis",
+                            (int) SimulatedConnectionSource.defaultMeanServiceTime.toMillis()
+                    )),
+                    intProperty("loadgen.simulated.rows", SimulatedConnectionSource.defaultNumRows)
+            );
+            case "mysql" -> new ConnectionPool(
+                    connectionConfig(),
+                    new ConnectionPoolConfig(1, intProperty("loadgen.poolSize", numThreads))
+            );
+            default -> throw new IllegalArgumentException(
+                    "loadgen.target = '" + target + "', must be 'simulated' or 'mysql'"
+            );
+        };
+    }
+
+    /**
+     * Database configured by `loadgen.user`, `loadgen.password`,
+     * `loadgen.database`, `loadgen.host` and `loadgen.port`.
+     */
+    static ConnectionConfig connectionConfig() {
+        return new ConnectionConfig(
+                System.getProperty("loadgen.user", "root"),
+                System.getProperty("loadgen.password", ""),
+                System.getProperty("loadgen.database", "sakila"),
+                intProperty("loadgen.port", ConnectionConfig.defaultPort),
+                System.getProperty("loadgen.host", ConnectionConfig.defaultHost)
+        );
+    }
+
+    private static int intProperty(String name, int defaultValue) {
+        return Integer.parseInt(System.getProperty(name, String.valueOf(defaultValue)));
+    }
+}
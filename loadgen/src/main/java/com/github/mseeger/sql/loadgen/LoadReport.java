@@ -0,0 +1,212 @@
+package com.github.mseeger.sql.loadgen;
+
+import org.HdrHistogram.AbstractHistogram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Results of `OpenLoopDriver.run`. Response and service times are recorded
+ * in microseconds, and reported in milliseconds.
+ * <p>
+ * `writeJson` writes a report which can be compared between versions. Next
+ * to summary statistics, it contains both histograms in the compressed
+ * encoding of HdrHistogram, encoded as Base64, so that they can be
+ * decoded by `Histogram.decodeFromCompressedByteBuffer` for a more detailed
+ * comparison.
+ *
+ * @param workload Name of workload
+ * @param targetRate Target rate, in requests per second
+ * @param numThreads Number of worker threads
+ * @param warmup Warmup period
+ * @param duration Measurement period
+ * @param seed Seed for request parameters
+ * @param numScheduled Number of requests scheduled in the measurement period
+ * @param responseTimes Response times of successful requests, from scheduled
+ *                      start to end
+ * @param serviceTimes Service times of successful requests, from actual
+ *                     start to end
+ * @param numErrors Number of requests which failed
+ * @param errorsByType Maps exception class names to number of requests
+ *                     failing with them
+ * @param measurementTime Time from start of measurement period until the last
+ *                        request finished, but at least `duration`
+ */
+public record LoadReport(
+        String workload,
+        double targetRate,
+        int numThreads,
+        Duration warmup,
+        Duration duration,
+        long seed,
+        long numScheduled,
+        AbstractHistogram responseTimes,
+        AbstractHistogram serviceTimes,
+        long numErrors,
+        Map<String, Long> errorsByType,
+        Duration measurementTime
+) {
+    static final int significantDigits = 3;
+    private static final double[] percentiles = {50, 90, 99, 99.9, 99.99};
+    private static final double microsPerMilli = 1000.0;
+
+    public long numSucceeded() {
+        return responseTimes.getTotalCount();
+    }
+
+    /**
+     * @return Number of requests which did not finish before the drain
+     * timeout
+     */
+    public long numIncomplete() {
+        return numScheduled - numSucceeded() - numErrors;
+    }
+
+    /**
+     * @return Fraction of finished requests which failed
+     */
+    public double errorRate() {
+        long numFinished = numSucceeded() + numErrors;
+        return numFinished == 0 ? 0 : (double) numErrors / numFinished;
+    }
+
+    /**
+     * @return Successful requests per second. If the system cannot keep up
+     * with the target rate, this is smaller
+     */
+    public double throughput() {
+        return numSucceeded() / (measurementTime.toNanos() / 1e9);
+    }
+
+    /**
+     * Writes the report as a JSON object.
+     *
+     * @param out Output
+     * @param labels Additional entries for the "labels" object, such as the
+     *               version or the database used
+     */
+    public void writeJson(Appendable out, Map<String, String> labels) throws IOException {
+        out.append("{\n");
+        out.append("  \"workload\": ").append(quote(workload)).append(",\n");
+        out.append("  \"labels\": {");
+        appendEntries(out, new TreeMap<>(labels), true);
+        out.append("},\n");
+        out.append("  \"config\": {\n");
+        out.append("    \"targetRate\": ").append(number(targetRate)).append(",\n");
+        out.append("    \"numThreads\": ").append(String.valueOf(numThreads)).append(",\n");
+        out.append("    \"warmupSeconds\": ").append(number(warmup.toMillis() / 1000.0)).append(",\n");
+        out.append("    \"durationSeconds\": ").append(number(duration.toMillis() / 1000.0)).append(",\n");
+        out.append("    \"seed\": ").append(String.valueOf(seed)).append("\n");
+        out.append("  },\n");
+        out.append("  \"requests\": {\n");
+        out.append("    \"scheduled\": ").append(String.valueOf(numScheduled)).append(",\n");
+        out.append("    \"succeeded\": ").append(String.valueOf(numSucceeded())).append(",\n");
+        out.append("    \"failed\": ").append(String.valueOf(numErrors)).append(",\n");
+        out.append("    \"incomplete\": ").append(String.valueOf(numIncomplete())).append("\n");
+        out.append("  },\n");
+        out.append("  \"throughput\": ").append(number(throughput())).append(",\n");
+        out.append("  \"errorRate\": ").append(number(errorRate())).append(",\n");
+        out.append("  \"errorsByType\": {");
+        appendEntries(out, new TreeMap<>(errorsByType), false);
+        out.append("},\n");
+        out.append("  \"responseTimeMillis\": ");
+        appendSummary(out, responseTimes);
+        out.append(",\n");
+        out.append("  \"serviceTimeMillis\": ");
+        appendSummary(out, serviceTimes);
+        out.append(",\n");
+        out.append("  \"histograms\": {\n");
+        out.append("    \"unit\": \"microseconds\",\n");
+        out.append("    \"responseTime\": ").append(quote(encode(responseTimes))).append(",\n");
+        out.append("    \"serviceTime\": ").append(quote(encode(serviceTimes))).append("\n");
+        out.append("  }\n");
+        out.append("}\n");
+    }
+
+    /**
+     * Prints a short summary, followed by the percentile distribution of
+     * response times.
+     */
+    public void printSummary(PrintStream out) {
+        out.printf(
+                "%s: target %.1f/s, achieved %.1f/s, %d succeeded, %d failed, %d incomplete%n",
+                workload, targetRate, throughput(), numSucceeded(), numErrors, numIncomplete()
+        );
+        for (var percentile : percentiles) {
+            out.printf(
+                    "  p%-6s response %10.3f ms, service %10.3f ms%n",
+                    number(percentile),
+                    responseTimes.getValueAtPercentile(percentile) / microsPerMilli,
+                    serviceTimes.getValueAtPercentile(percentile) / microsPerMilli
+            );
+        }
+        out.println("Response time distribution (ms):");
+        responseTimes.outputPercentileDistribution(out, microsPerMilli);
+    }
+
+    private static void appendSummary(Appendable out, AbstractHistogram histogram) throws IOException {
+        out.append("{");
+        out.append("\"mean\": ").append(number(histogram.getMean() / microsPerMilli));
+        for (var percentile : percentiles) {
+            out.append(", ").append(quote("p" + number(percentile))).append(": ")
+                    .append(number(histogram.getValueAtPercentile(percentile) / microsPerMilli));
+        }
+        out.append(", \"max\": ").append(number(histogram.getMaxValue() / microsPerMilli));
+        out.append("}");
+    }
+
+    private static void appendEntries(Appendable out, Map<String, ?> entries, boolean quoteValues) throws IOException {
+        boolean first = true;
+        for (var entry : entries.entrySet()) {
+            if (!first)
+                out.append(", ");
+            first = false;
+            var value = String.valueOf(entry.getValue());
+            out.append(quote(entry.getKey())).append(": ").append(quoteValues ? quote(value) : value);
+        }
+    }
+
+    private static String encode(AbstractHistogram histogram) {
+        var buffer = ByteBuffer.allocate(histogram.getNeededByteBufferCapacity());
+        int numBytes = histogram.encodeIntoCompressedByteBuffer(buffer);
+        return Base64.getEncoder().encodeToString(Arrays.copyOf(buffer.array(), numBytes));
+    }
+
+    /**
+     * Integral values are written without fraction.
+     */
+    private static String number(double value) {
+        if (!Double.isFinite(value))
+            return "null";
+        if (value == Math.rint(value) && Math.abs(value) < 1e15)
+            return Long.toString((long) value);
+        return Double.toString(value);
+    }
+
+    private static String quote(String value) {
+        var result = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> result.append("\\\"");
+                case '\\' -> result.append("\\\\");
+                case '\n' -> result.append("\\n");
+                case '\r' -> result.append("\\r");
+                case '\t' -> result.append("\\t");
+                default -> {
+                    if (c < 0x20)
+                        result.append(String.format("\\u%04x", (int) c));
+                    else
+                        result.append(c);
+                }
+            }
+        }
+        return result.append('"').toString();
+    }
+}
@@ -0,0 +1,156 @@
+package com.github.mseeger.sql.loadgen;
+
+import org.HdrHistogram.ConcurrentHistogram;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Replays requests of a `Workload` at a fixed target rate. Request i is
+ * scheduled to start at `start + i / targetRate`, independent of whether
+ * earlier requests have finished (open loop). Requests are run by a fixed
+ * number of worker threads. If all of them are busy, requests wait in a
+ * queue.
+ * <p>
+ * The response time of a request is measured from its scheduled start, not
+ * from when a worker picks it up, so that time spent waiting behind slow
+ * requests is included (correction for coordinated omission). The service
+ * time, measured from the actual start, is recorded as well. The difference
+ * between the two is the queueing delay.
+ * <p>
+ * Requests scheduled during the warmup period are run, but not recorded.
+ */
+public class OpenLoopDriver {
+    /**
+     * Requests still running this long after the last one was scheduled are
+     * reported as incomplete.
+     */
+    public static final Duration defaultDrainTimeout = Duration.ofSeconds(60);
+
+    private final Workload workload;
+    private final double targetRate;
+    private final int numThreads;
+    private final Duration drainTimeout;
+
+    /**
+     * @param workload Source of requests
+     * @param targetRate Requests per second
+     * @param numThreads Number of worker threads
+     * @param drainTimeout See `defaultDrainTimeout`
+     */
+    public OpenLoopDriver(Workload workload, double targetRate, int numThreads, Duration drainTimeout) {
+        if (!(targetRate > 0))
+            throw new IllegalArgumentException("targetRate = " + targetRate + ", must be positive");
+        if (numThreads < 1)
+            throw new IllegalArgumentException("numThreads = " + numThreads + ", must be positive");
+        this.workload = workload;
+        this.targetRate = targetRate;
+        this.numThreads = numThreads;
+        this.drainTimeout = drainTimeout;
+    }
+
+    public OpenLoopDriver(Workload workload, double targetRate, int numThreads) {
+        this(workload, targetRate, numThreads, defaultDrainTimeout);
+    }
+
+    /**
+     * Runs the workload for `warmup` followed by `duration`, and waits for
+     * the requests to finish.
+     *
+     * @param warmup Requests scheduled in this period are not recorded
+     * @param duration Period in which requests are recorded
+     * @param seed Seed for drawing request parameters
+     * @return Report for the requests scheduled during `duration`
+     */
+    public LoadReport run(Duration warmup, Duration duration, long seed) throws InterruptedException {
+        var recording = new Recording();
+        var random = new SplittableRandom(seed);
+        double intervalNanos = 1e9 / targetRate;
+        long warmupNanos = warmup.toNanos();
+        long totalNanos = warmupNanos + duration.toNanos();
+        long numScheduled = 0;
+        ExecutorService workers = Executors.newFixedThreadPool(numThreads);
+        long start = System.nanoTime();
+        try {
+            for (long i = 0; ; i++) {
+                long offset = (long) (i * intervalNanos);
+                if (offset >= totalNanos)
+                    break;
+                long scheduledStart = start + offset;
+                // `parkNanos` may return early, spuriously or if interrupted
+                for (long delay; (delay = scheduledStart - System.nanoTime()) > 0; ) {
+                    if (Thread.interrupted())
+                        throw new InterruptedException();
+                    LockSupport.parkNanos(delay);
+                }
+                var request = workload.nextRequest(random);
+                boolean isRecorded = offset >= warmupNanos;
+                if (isRecorded)
+                    numScheduled++;
+                workers.execute(() -> recording.run(request, scheduledStart, isRecorded));
+            }
+        } finally {
+            workers.shutdown();
+        }
+        boolean isDrained = workers.awaitTermination(drainTimeout.toNanos(), TimeUnit.NANOSECONDS);
+        if (!isDrained)
+            workers.shutdownNow();
+        long measurementStart = start + warmupNanos;
+        long measurementEnd = Math.max(recording.lastCompletion.get(), start + totalNanos);
+        return new LoadReport(
+                workload.getName(),
+                targetRate,
+                numThreads,
+                warmup,
+                duration,
+                seed,
+                numScheduled,
+                recording.responseTimes.copy(),
+                recording.serviceTimes.copy(),
+                recording.numErrors.sum(),
+                Map.copyOf(recording.errorsByType),
+                Duration.ofNanos(measurementEnd - measurementStart)
+        );
+    }
+
+    /**
+     * Collects measurements of worker threads. Times are recorded in
+     * microseconds.
+     */
+    private static class Recording {
+        final ConcurrentHistogram responseTimes = new ConcurrentHistogram(LoadReport.significantDigits);
+        final ConcurrentHistogram serviceTimes = new ConcurrentHistogram(LoadReport.significantDigits);
+        final LongAdder numErrors = new LongAdder();
+        final ConcurrentHashMap<String, Long> errorsByType = new ConcurrentHashMap<>();
+        final AtomicLong lastCompletion = new AtomicLong(Long.MIN_VALUE);
+
+        void run(Workload.Request request, long scheduledStart, boolean isRecorded) {
+            long actualStart = System.nanoTime();
+            Exception error = null;
+            try {
+                request.run();
+            } catch (Exception e) {
+                error = e;
+            }
+            long end = System.nanoTime();
+            if (!isRecorded)
+                return;
+            lastCompletion.accumulateAndGet(end, Math::max);
+            if (error == null) {
+                responseTimes.recordValue(TimeUnit.NANOSECONDS.toMicros(end - scheduledStart));
+                serviceTimes.recordValue(TimeUnit.NANOSECONDS.toMicros(end - actualStart));
+            } else {
+                numErrors.increment();
+                errorsByType.merge(error.getClass().getName(), 1L, Long::sum);
+            }
+        }
+    }
+}
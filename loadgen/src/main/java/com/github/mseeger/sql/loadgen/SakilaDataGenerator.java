@@ -0,0 +1,512 @@
+package com.github.mseeger.sql.loadgen;
+
+import com.github.mseeger.sql.BatchSQLQuery;
+import com.github.mseeger.sql.ConnectionConfig;
+import com.github.mseeger.sql.DriverManagerConnectionSource;
+import com.github.mseeger.sql.QueryExecutor;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Replaces the `film`, `inventory` and `rental` data of a database with the
+ * Sakila schema by synthetic data, whose size grows linearly with a scale
+ * factor. Scale factor 1 gives about the size of the Sakila sample database
+ * (1000 films, 4581 inventory items, 16044 rentals), and 1000 gives about 16
+ * million rentals. The number of films is capped at 65535 (the range of
+ * `film.film_id`), more inventory items are created per film instead.
+ * <p>
+ * Data is skewed: inventory items are spread over films by a Zipf
+ * distribution, so that popular films have more copies, and they are also
+ * rented more often. Stores receive inventory by a Zipf distribution as
+ * well. Rentals are generated in time order between `from` and `to`, such
+ * that an item is not rented while it is out. Rentals not returned by `to`,
+ * and a fraction `lostFraction` of lost items, have no return date (open
+ * rentals). Customers are drawn uniformly from the existing ones.
+ * <p>
+ * Generation is deterministic given the seed. Rows are loaded by
+ * `QueryExecutor.runBatch`, with batched statements rewritten into
+ * multi-row INSERTs, and with foreign key and unique checks switched off
+ * for the loading session. Missing stores (and their managers in `staff`)
+ * are created. If `rental` has a column `store_id` (which
+ * `FilmsInStockQuery` uses), it is filled with the store of the item.
+ */
+public class SakilaDataGenerator {
+    public static final int filmsPerScale = 1000;
+    public static final int inventoryPerScale = 4581;
+    public static final int rentalsPerScale = 16044;
+    public static final int maxFilms = 65535;
+    public static final int maxInventory = (1 << 24) - 1;
+    public static final int maxStores = 255;
+    public static final double defaultFilmSkew = 1.0;
+    public static final double defaultStoreSkew = 0.5;
+    public static final double defaultLostFraction = 0.002;
+    /**
+     * Rows are generated and loaded in blocks of this size, each of which is
+     * a transaction.
+     */
+    public static final int blockSize = 50_000;
+    public static final int batchChunkSize = 1000;
+
+    private static final Duration minRentalDuration = Duration.ofDays(1);
+    private static final Duration maxRentalDuration = Duration.ofDays(10);
+    // Attempts to find an item which is not rented out
+    private static final int maxAttempts = 8;
+    private static final BigDecimal[] rentalRates = {
+            new BigDecimal("0.99"), new BigDecimal("2.99"), new BigDecimal("4.99")
+    };
+    private static final String[] titleWords = {
+            "ACADEMY", "AFRICAN", "AGENT", "AIRPORT", "ALASKA", "ANGELS", "APOLLO", "ARMAGEDDON",
+            "BALLROOM", "BANG", "BEAST", "BIRDS", "BLADE", "BRIDE", "CANDIDATE", "CASPER",
+            "CHAMBER", "CHICAGO", "CLUELESS", "CONFIDENTIAL", "CRAFT", "DANCING", "DINOSAUR", "DOCTOR",
+            "DRAGON", "DUCK", "EGG", "EXPRESS", "FANTASY", "FIGHT", "FLASH", "FOREVER",
+            "FROST", "GALAXY", "GHOST", "GOLD", "GRAFFITI", "HARBOR", "HUNTER", "ICE",
+            "JUNGLE", "KING", "LADY", "LION", "MAGIC", "MIDNIGHT", "MONSTER", "NIGHT",
+            "OCEAN", "PANTHER", "PIRATES", "RAIDERS", "RIVER", "SAINTS", "SHOW", "SPIRIT",
+            "STORM", "SUMMER", "TIMBERLAND", "TRAIN", "UNITED", "VOYAGE", "WAR", "WONDER"
+    };
+
+    private final double scale;
+    private final int numStores;
+    private final long seed;
+    private final double filmSkew;
+    private final double storeSkew;
+    private final double lostFraction;
+    private final LocalDateTime from;
+    private final LocalDateTime to;
+
+    /**
+     * @param scale Scale factor, see above
+     * @param numStores Number of stores
+     * @param seed Seed of random generator
+     * @param filmSkew Exponent of Zipf distribution over films
+     * @param storeSkew Exponent of Zipf distribution over stores
+     * @param lostFraction Fraction of rentals which are never returned
+     * @param from Start of rental period
+     * @param to End of rental period
+     */
+    public SakilaDataGenerator(
+            double scale,
+            int numStores,
+            long seed,
+            double filmSkew,
+            double storeSkew,
+            double lostFraction,
+            LocalDateTime from,
+            LocalDateTime to
+    ) {
+        if (!(scale > 0))
+            throw new IllegalArgumentException("scale = " + scale + ", must be positive");
+        if (numStores < 1 || numStores > maxStores)
+            throw new IllegalArgumentException("numStores = " + numStores + ", must be in [1, " + maxStores + "]");
+        if (!to.isAfter(from))
+            throw new IllegalArgumentException("to must be after from");
+        this.scale = scale;
+        this.numStores = numStores;
+        this.seed = seed;
+        this.filmSkew = filmSkew;
+        this.storeSkew = storeSkew;
+        this.lostFraction = lostFraction;
+        this.from = from;
+        this.to = to;
+    }
+
+    /**
+     * The rental period is the one of the Sakila sample database, see
+     * `FilmsInStockWorkload.defaultFrom`.
+     */
+    public SakilaDataGenerator(double scale, int numStores, long seed) {
+        this(
+                scale,
+                numStores,
+                seed,
+                defaultFilmSkew,
+                defaultStoreSkew,
+                defaultLostFraction,
+                FilmsInStockWorkload.defaultFrom,
+                FilmsInStockWorkload.defaultTo
+        );
+    }
+
+    public int getNumFilms() {
+        return (int) Math.min(maxFilms, Math.max(1, Math.round(filmsPerScale * scale)));
+    }
+
+    public int getNumInventory() {
+        return (int) Math.min(maxInventory, Math.max(1, Math.round(inventoryPerScale * scale)));
+    }
+
+    /**
+     * @return Number of rentals attempted. Slightly fewer are created if no
+     * item is available for some of them
+     */
+    public long getNumRentals() {
+        return Math.round(rentalsPerScale * scale);
+    }
+
+    /**
+     * Replaces the data. Existing rows of `film`, `inventory`, `rental`
+     * and the tables referencing them (`payment`, `film_actor`,
+     * `film_category`, `film_text`) are deleted if `truncate` is true.
+     *
+     * @param connectionConfig Database with the Sakila schema
+     * @param truncate Delete existing data? If false, `film`, `inventory`
+     *                 and `rental` must be empty
+     * @return Number of rentals created
+     */
+    public long generate(ConnectionConfig connectionConfig, boolean truncate) throws SQLException {
+        var loadConfig = connectionConfig
+                .withRewriteBatchedStatements(true)
+                .withDriverProperty("sessionVariables", "foreign_key_checks=0,unique_checks=0");
+        var random = new SplittableRandom(seed);
+        var filmRandom = random.split();
+        var inventoryRandom = random.split();
+        var rentalRandom = random.split();
+        try (
+                var connectionSource = new DriverManagerConnectionSource(loadConfig);
+                var executor = new QueryExecutor<Void>(connectionSource)
+        ) {
+            int numCustomers;
+            boolean rentalHasStoreID;
+            try (var connection = connectionSource.getConnection()) {
+                prepareTables(connection, truncate);
+                numCustomers = queryInt(connection, "SELECT MAX(customer_id) FROM customer");
+                if (numCustomers < 1)
+                    throw new IllegalStateException("Table customer must not be empty");
+                try (var columns = connection.getMetaData().getColumns(
+                        connection.getCatalog(), null, "rental", "store_id"
+                )) {
+                    rentalHasStoreID = columns.next();
+                }
+            }
+
+            int numFilms = getNumFilms();
+            var films = new ArrayList<Integer>(blockSize);
+            for (int filmID = 1; filmID <= numFilms; filmID++) {
+                films.add(filmID);
+                if (films.size() == blockSize || filmID == numFilms) {
+                    executor.runBatch(filmInsert(filmRandom), films, batchChunkSize, false);
+                    films.clear();
+                }
+            }
+
+            var inventory = new Inventory(numFilms, getNumInventory(), inventoryRandom);
+            var items = new ArrayList<Integer>(blockSize);
+            for (int item = 0; item < inventory.numItems(); item++) {
+                items.add(item);
+                if (items.size() == blockSize || item == inventory.numItems() - 1) {
+                    executor.runBatch(inventoryInsert(inventory), items, batchChunkSize, false);
+                    items.clear();
+                }
+            }
+
+            long numRentals = generateRentals(executor, inventory, numCustomers, rentalHasStoreID, rentalRandom);
+            try (
+                    var connection = connectionSource.getConnection();
+                    var statement = connection.createStatement()
+            ) {
+                statement.execute("ANALYZE TABLE film, inventory, rental");
+            }
+            return numRentals;
+        }
+    }
+
+    private void prepareTables(Connection connection, boolean truncate) throws SQLException {
+        try (var statement = connection.createStatement()) {
+            if (truncate) {
+                for (var table : List.of(
+                        "payment", "rental", "inventory", "film_actor", "film_category", "film_text", "film"
+                ))
+                    statement.execute("TRUNCATE TABLE " + table);
+            } else {
+                for (var table : List.of("film", "inventory", "rental")) {
+                    if (queryInt(connection, "SELECT COUNT(*) FROM " + table) > 0)
+                        throw new IllegalStateException("Table " + table + " is not empty, and truncate is false");
+                }
+            }
+        }
+        // Store i is managed by staff member i, as in the sample database.
+        // Existing rows are kept, without ignoring other errors as
+        // `INSERT IGNORE` would
+        try (
+                var staffExists = connection.prepareStatement("SELECT 1 FROM staff WHERE staff_id = ?");
+                var staffInsert = connection.prepareStatement("""
+                        INSERT INTO staff (staff_id, first_name, last_name, address_id, store_id, username)
+                        VALUES (?, 'Manager', ?, 1, ?, ?)
+                        """);
+                var storeExists = connection.prepareStatement("SELECT 1 FROM store WHERE store_id = ?");
+                var storeInsert = connection.prepareStatement("""
+                        INSERT INTO store (store_id, manager_staff_id, address_id)
+                        VALUES (?, ?, 1)
+                        """)
+        ) {
+            for (int storeID = 1; storeID <= numStores; storeID++) {
+                if (!exists(staffExists, storeID)) {
+                    staffInsert.setInt(1, storeID);
+                    staffInsert.setString(2, "Store " + storeID);
+                    staffInsert.setInt(3, storeID);
+                    staffInsert.setString(4, "manager" + storeID);
+                    staffInsert.executeUpdate();
+                }
+                if (!exists(storeExists, storeID)) {
+                    storeInsert.setInt(1, storeID);
+                    storeInsert.setInt(2, storeID);
+                    storeInsert.executeUpdate();
+                }
+            }
+        }
+    }
+
+    private static boolean exists(PreparedStatement statement, int id) throws SQLException {
+        statement.setInt(1, id);
+        try (var resultSet = statement.executeQuery()) {
+            return resultSet.next();
+        }
+    }
+
+    private static int queryInt(Connection connection, String queryString) throws SQLException {
+        try (
+                var statement = connection.createStatement();
+                var resultSet = statement.executeQuery(queryString)
+        ) {
+            return resultSet.next() ? resultSet.getInt(1) : 0;
+        }
+    }
+
+    private static BatchSQLQuery<Integer> filmInsert(SplittableRandom random) {
+        return new BatchSQLQuery<>() {
+            @Override
+            protected String getQueryString() {
+                return """
+                        INSERT INTO film (film_id, title, language_id, rental_duration, rental_rate, length, replacement_cost)
+                        VALUES (?, ?, 1, ?, ?, ?, ?)
+                        """;
+            }
+
+            @Override
+            protected void imputeParameters(PreparedStatement statement, Integer filmID) throws SQLException {
+                statement.setInt(1, filmID);
+                statement.setString(2, titleWords[random.nextInt(titleWords.length)] + " "
+                        + titleWords[random.nextInt(titleWords.length)] + " " + filmID);
+                statement.setInt(3, random.nextInt(3, 8));
+                statement.setBigDecimal(4, rentalRates[random.nextInt(rentalRates.length)]);
+                statement.setInt(5, random.nextInt(46, 186));
+                statement.setBigDecimal(6, BigDecimal.valueOf(999 + 100L * random.nextInt(21), 2));
+            }
+        };
+    }
+
+    private static BatchSQLQuery<Integer> inventoryInsert(Inventory inventory) {
+        return new BatchSQLQuery<>() {
+            @Override
+            protected String getQueryString() {
+                return "INSERT INTO inventory (inventory_id, film_id, store_id) VALUES (?, ?, ?)";
+            }
+
+            @Override
+            protected void imputeParameters(PreparedStatement statement, Integer item) throws SQLException {
+                statement.setInt(1, item + 1);
+                statement.setInt(2, inventory.filmOf(item) + 1);
+                statement.setInt(3, inventory.storeOf(item) + 1);
+            }
+        };
+    }
+
+    private record Rental(
+            long rentalID,
+            long rentalSecond,
+            int item,
+            int customerID,
+            long returnSecond,
+            int storeID
+    ) {}
+
+    private long generateRentals(
+            QueryExecutor<Void> executor,
+            Inventory inventory,
+            int numCustomers,
+            boolean rentalHasStoreID,
+            SplittableRandom random
+    ) throws SQLException {
+        var insert = rentalInsert(rentalHasStoreID);
+        long periodSeconds = Duration.between(from, to).toSeconds();
+        long numAttempts = getNumRentals();
+        double step = (double) periodSeconds / numAttempts;
+        // Second from which each item is available again
+        var availableFrom = new long[inventory.numItems()];
+        var block = new ArrayList<Rental>(blockSize);
+        long rentalID = 0;
+        for (long i = 0; i < numAttempts; i++) {
+            long second = (long) ((i + random.nextDouble()) * step);
+            int item = -1;
+            for (int attempt = 0; attempt < maxAttempts && item < 0; attempt++) {
+                int candidate = inventory.sampleItem(random);
+                if (candidate >= 0 && availableFrom[candidate] <= second)
+                    item = candidate;
+            }
+            if (item < 0)
+                continue;
+            long returnSecond = second + random.nextLong(
+                    minRentalDuration.toSeconds(), maxRentalDuration.toSeconds() + 1
+            );
+            if (returnSecond > periodSeconds || random.nextDouble() < lostFraction) {
+                returnSecond = -1;
+                availableFrom[item] = Long.MAX_VALUE;
+            } else {
+                availableFrom[item] = returnSecond;
+            }
+            block.add(new Rental(
+                    ++rentalID,
+                    second,
+                    item,
+                    1 + random.nextInt(numCustomers),
+                    returnSecond,
+                    inventory.storeOf(item) + 1
+            ));
+            if (block.size() == blockSize) {
+                executor.runBatch(insert, block, batchChunkSize, false);
+                block.clear();
+            }
+        }
+        if (!block.isEmpty())
+            executor.runBatch(insert, block, batchChunkSize, false);
+        return rentalID;
+    }
+
+    private BatchSQLQuery<Rental> rentalInsert(boolean rentalHasStoreID) {
+        return new BatchSQLQuery<>() {
+            @Override
+            protected String getQueryString() {
+                return rentalHasStoreID
+                        ? """
+                        INSERT INTO rental (rental_id, rental_date, inventory_id, customer_id, return_date, staff_id, store_id)
+                        VALUES (?, ?, ?, ?, ?, ?, ?)
+                        """
+                        : """
+                        INSERT INTO rental (rental_id, rental_date, inventory_id, customer_id, return_date, staff_id)
+                        VALUES (?, ?, ?, ?, ?, ?)
+                        """;
+            }
+
+            @Override
+            protected void imputeParameters(PreparedStatement statement, Rental rental) throws SQLException {
+                statement.setLong(1, rental.rentalID());
+                statement.setTimestamp(2, Timestamp.valueOf(from.plusSeconds(rental.rentalSecond())));
+                statement.setInt(3, rental.item() + 1);
+                statement.setInt(4, rental.customerID());
+                if (rental.returnSecond() < 0)
+                    statement.setNull(5, Types.TIMESTAMP);
+                else
+                    statement.setTimestamp(5, Timestamp.valueOf(from.plusSeconds(rental.returnSecond())));
+                // The manager of the store rents out its items
+                statement.setInt(6, rental.storeID());
+                if (rentalHasStoreID)
+                    statement.setInt(7, rental.storeID());
+            }
+        };
+    }
+
+    /**
+     * Inventory items, numbered from 0 and grouped by film. Films are ranked
+     * by popularity via a random permutation, so that popularity does not
+     * depend on the film ID.
+     */
+    private class Inventory {
+        private final int[] filmOfRank;
+        private final ZipfDistribution filmDistribution;
+        // Items of film f are firstItem[f], ..., firstItem[f + 1] - 1
+        private final int[] firstItem;
+        private final byte[] stores;
+
+        Inventory(int numFilms, int numItems, SplittableRandom random) {
+            filmOfRank = new int[numFilms];
+            for (int f = 0; f < numFilms; f++)
+                filmOfRank[f] = f;
+            for (int f = numFilms - 1; f > 0; f--) {
+                int other = random.nextInt(f + 1);
+                int temp = filmOfRank[f];
+                filmOfRank[f] = filmOfRank[other];
+                filmOfRank[other] = temp;
+            }
+            filmDistribution = new ZipfDistribution(numFilms, filmSkew);
+            var numCopies = new int[numFilms];
+            for (int i = 0; i < numItems; i++)
+                numCopies[filmOfRank[filmDistribution.sample(random)]]++;
+            firstItem = new int[numFilms + 1];
+            for (int f = 0; f < numFilms; f++)
+                firstItem[f + 1] = firstItem[f] + numCopies[f];
+            var storeDistribution = new ZipfDistribution(numStores, storeSkew);
+            stores = new byte[numItems];
+            for (int i = 0; i < numItems; i++)
+                stores[i] = (byte) storeDistribution.sample(random);
+        }
+
+        int numItems() {
+            return stores.length;
+        }
+
+        int storeOf(int item) {
+            return Byte.toUnsignedInt(stores[item]);
+        }
+
+        int filmOf(int item) {
+            int index = Arrays.binarySearch(firstItem, item);
+            if (index < 0)
+                return -index - 2;
+            // Skip films without copies, which share the same first item
+            while (firstItem[index + 1] == item)
+                index++;
+            return index;
+        }
+
+        /**
+         * Draws a film by popularity, and a random copy of it.
+         *
+         * @return Item, or -1 if the film has no copies
+         */
+        int sampleItem(SplittableRandom random) {
+            int film = filmOfRank[filmDistribution.sample(random)];
+            int numCopies = firstItem[film + 1] - firstItem[film];
+            return numCopies == 0 ? -1 : firstItem[film] + random.nextInt(numCopies);
+        }
+    }
+
+    /**
+     * Configured by system properties `datagen.scale` (1), `datagen.stores`
+     * (2), `datagen.seed`, `datagen.filmSkew`, `datagen.storeSkew`,
+     * `datagen.lostFraction` and `datagen.truncate` (false), and the
+     * connection properties of `LoadGenerator`.
+     */
+    public static void main(String[] args) throws SQLException {
+        var generator = new SakilaDataGenerator(
+                Double.parseDouble(System.getProperty("datagen.scale", "1")),
+                Integer.parseInt(System.getProperty("datagen.stores", "2")),
+                Long.parseLong(System.getProperty("datagen.seed", String.valueOf(LoadGenerator.defaultSeed))),
+                Double.parseDouble(System.getProperty("datagen.filmSkew", String.valueOf(defaultFilmSkew))),
+                Double.parseDouble(System.getProperty("datagen.storeSkew", String.valueOf(defaultStoreSkew))),
+                Double.parseDouble(System.getProperty("datagen.lostFraction", String.valueOf(defaultLostFraction))),
+                FilmsInStockWorkload.defaultFrom,
+                FilmsInStockWorkload.defaultTo
+        );
+        boolean truncate = Boolean.parseBoolean(System.getProperty("datagen.truncate", "false"));
+        System.out.printf(
+                "Generating %d films, %d inventory items, up to %d rentals%n",
+                generator.getNumFilms(), generator.getNumInventory(), generator.getNumRentals()
+        );
+        long start = System.nanoTime();
+        long numRentals = generator.generate(LoadGenerator.connectionConfig(), truncate);
+        System.out.printf(
+                "Created %d rentals in %.1f s%n", numRentals, (System.nanoTime() - start) / 1e9
+        );
+    }
+}
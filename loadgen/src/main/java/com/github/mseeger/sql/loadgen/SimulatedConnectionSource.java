@@ -0,0 +1,154 @@
+package com.github.mseeger.sql.loadgen;
+
+import com.github.mseeger.sql.ConnectionSource;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * In-process stand-in for a database server, so that the load generator can
+ * be run without MySQL. Every query returns `numRows` rows with columns
+ * `film_id`, `title`, `num_in_stock`, whatever its query string and
+ * parameters.
+ * <p>
+ * The server executes at most `capacity` queries at the same time, further
+ * queries wait for a free slot. Executing a query takes an exponentially
+ * distributed service time with mean `meanServiceTime`. This is enough to
+ * show queueing once the offered load exceeds `capacity / meanServiceTime`.
+ */
+public class SimulatedConnectionSource implements ConnectionSource {
+    public static final int defaultCapacity = 8;
+    public static final Duration defaultMeanServiceTime = Duration.ofMillis(2);
+    public static final int defaultNumRows = 100;
+
+    private static final String[] columnNames = {"film_id", "title", "num_in_stock"};
+    private static final int[] columnTypes = {Types.INTEGER, Types.VARCHAR, Types.INTEGER};
+
+    private final Semaphore slots;
+    private final long meanServiceNanos;
+    private final int numRows;
+
+    /**
+     * @param capacity Maximum number of queries executed at the same time
+     * @param meanServiceTime Mean time for executing a query
+     * @param numRows Number of rows returned by every query
+     */
+    public SimulatedConnectionSource(int capacity, Duration meanServiceTime, int numRows) {
+        this.slots = new Semaphore(capacity, true);
+        this.meanServiceNanos = meanServiceTime.toNanos();
+        this.numRows = numRows;
+    }
+
+    public SimulatedConnectionSource() {
+        this(defaultCapacity, defaultMeanServiceTime, defaultNumRows);
+    }
+
+    @Override
+    public Connection getConnection() {
+        var closed = new boolean[1];
+        return proxy(Connection.class, (proxy, method, args) -> switch (method.getName()) {
+            case "prepareStatement" -> prepareStatement();
+            case "close" -> {
+                closed[0] = true;
+                yield null;
+            }
+            case "isClosed" -> closed[0];
+            case "isValid" -> !closed[0];
+            case "getAutoCommit" -> true;
+            default -> objectMethod(proxy, method, args);
+        });
+    }
+
+    @Override
+    public void close() {}
+
+    private PreparedStatement prepareStatement() {
+        return proxy(PreparedStatement.class, (proxy, method, args) -> switch (method.getName()) {
+            case "executeQuery" -> executeQuery();
+            default -> objectMethod(proxy, method, args);
+        });
+    }
+
+    private ResultSet executeQuery() throws SQLException {
+        try {
+            slots.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for simulated server", e);
+        }
+        try {
+            double uniform = ThreadLocalRandom.current().nextDouble();
+            LockSupport.parkNanos((long) (-meanServiceNanos * Math.log1p(-uniform)));
+        } finally {
+            slots.release();
+        }
+        return resultSet();
+    }
+
+    private ResultSet resultSet() {
+        var row = new int[1];
+        return proxy(ResultSet.class, (proxy, method, args) -> switch (method.getName()) {
+            case "next" -> ++row[0] <= numRows;
+            case "getInt" -> (Integer) args[0] == 1 ? row[0] : 1 + row[0] % 7;
+            case "getString" -> "FILM " + row[0];
+            case "getMetaData" -> metaData();
+            default -> objectMethod(proxy, method, args);
+        });
+    }
+
+    private static ResultSetMetaData metaData() {
+        return proxy(ResultSetMetaData.class, (proxy, method, args) -> switch (method.getName()) {
+            case "getColumnCount" -> columnNames.length;
+            case "getColumnLabel", "getColumnName" -> columnNames[(Integer) args[0] - 1];
+            case "getColumnType" -> columnTypes[(Integer) args[0] - 1];
+            case "isSigned" -> true;
+            default -> objectMethod(proxy, method, args);
+        });
+    }
+
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, handler));
+    }
+
+    /**
+     * Handles `Object` methods, and returns default values for all other
+     * methods, so that setters and `close` do nothing.
+     */
+    private static Object objectMethod(Object proxy, Method method, Object[] args) {
+        return switch (method.getName()) {
+            case "equals" -> proxy == args[0];
+            case "hashCode" -> System.identityHashCode(proxy);
+            case "toString" -> "Simulated" + proxy.getClass().getInterfaces()[0].getSimpleName();
+            default -> defaultValue(method.getReturnType());
+        };
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (type == boolean.class)
+            return false;
+        if (type == int.class)
+            return 0;
+        if (type == long.class)
+            return 0L;
+        if (type == double.class)
+            return 0.0;
+        if (type == float.class)
+            return 0.0f;
+        if (type == short.class)
+            return (short) 0;
+        if (type == byte.class)
+            return (byte) 0;
+        return null;
+    }
+}
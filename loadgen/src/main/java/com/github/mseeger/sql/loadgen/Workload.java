@@ -0,0 +1,26 @@
+package com.github.mseeger.sql.loadgen;
+
+import java.util.SplittableRandom;
+
+/**
+ * Source of requests replayed by `OpenLoopDriver`. Parameters of requests are
+ * drawn when they are scheduled, by a single thread, so that the sequence of
+ * requests only depends on the seed of `random`.
+ */
+public interface Workload {
+    /**
+     * @return Name used in reports
+     */
+    String getName();
+
+    /**
+     * @param random Source of randomness for request parameters
+     * @return Next request, which is run on a worker thread
+     */
+    Request nextRequest(SplittableRandom random);
+
+    @FunctionalInterface
+    interface Request {
+        void run() throws Exception;
+    }
+}
@@ -0,0 +1,33 @@
+package com.github.mseeger.sql.loadgen;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Zipf distribution over ranks 0, ..., `n - 1`: rank k is drawn with
+ * probability proportional to `1 / (k + 1)^exponent`. Exponent 0 gives the
+ * uniform distribution. Sampling is by binary search in the cumulative
+ * distribution.
+ */
+class ZipfDistribution {
+    private final double[] cumulative;
+
+    ZipfDistribution(int n, double exponent) {
+        if (n < 1)
+            throw new IllegalArgumentException("n = " + n + ", must be positive");
+        cumulative = new double[n];
+        double sum = 0;
+        for (int k = 0; k < n; k++) {
+            sum += Math.pow(k + 1, -exponent);
+            cumulative[k] = sum;
+        }
+        for (int k = 0; k < n; k++)
+            cumulative[k] /= sum;
+    }
+
+    int sample(SplittableRandom random) {
+        int index = Arrays.binarySearch(cumulative, random.nextDouble());
+        int rank = index >= 0 ? index : -index - 1;
+        return Math.min(rank, cumulative.length - 1);
+    }
+}
@@ -0,0 +1,28 @@
+package com.github.mseeger.sql;
+
+import java.sql.Statement;
+import java.util.List;
+
+/**
+ * Result of `QueryExecutor.runBatch`.
+ *
+ * @param chunkUpdateCounts Update counts for each chunk, as returned by
+ *                          `executeBatch`. With `rewriteBatchedStatements`,
+ *                          entries may be `Statement.SUCCESS_NO_INFO`
+ * @param generatedKeys Generated keys in the order of the entities, if they
+ *                      were requested. Empty otherwise
+ */
+public record BatchResult(List<int[]> chunkUpdateCounts, long[] generatedKeys) {
+    /**
+     * @return Sum of all update counts, where `Statement.SUCCESS_NO_INFO`
+     * entries are counted as 1
+     */
+    public long totalUpdateCount() {
+        long total = 0;
+        for (var counts : chunkUpdateCounts) {
+            for (int count : counts)
+                total += count == Statement.SUCCESS_NO_INFO ? 1 : Math.max(count, 0);
+        }
+        return total;
+    }
+}
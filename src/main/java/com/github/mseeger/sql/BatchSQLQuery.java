@@ -0,0 +1,33 @@
+package com.github.mseeger.sql;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * Write statement (INSERT, UPDATE, DELETE) which is executed once per entity
+ * in a batch, see `QueryExecutor.runBatch`. This is the counterpart of
+ * `SQLQuery` for writes: the query string contains slots "?", and
+ * `imputeParameters` binds values for them from one entity.
+ *
+ * @param <E> Entity type
+ */
+public abstract class BatchSQLQuery<E> {
+    protected abstract String getQueryString();
+
+    /**
+     * Name used to tag measurements of this statement, see
+     * `SQLQuery.getName`.
+     */
+    public String getName() {
+        return SQLQuery.nameOf(getClass());
+    }
+
+    /**
+     * Imputes values for the free slots of the query string, taken from
+     * `entity`.
+     *
+     * @param statement Imputes values for free slots in this statement
+     * @param entity Values are taken from this entity
+     */
+    protected abstract void imputeParameters(PreparedStatement statement, E entity) throws SQLException;
+}
@@ -0,0 +1,21 @@
+package com.github.mseeger.sql;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * Connection handed out by `ConnectionPool`, which may keep prepared
+ * statements across borrows.
+ */
+interface CachingConnection extends Connection {
+    /**
+     * Like `prepareStatement(queryString)`, but the statement is taken from
+     * the statement cache of the physical connection if possible. Closing the
+     * statement returns it to the cache.
+     *
+     * @param queryString Query string
+     * @return Prepared statement, without parameters set
+     */
+    PreparedStatement prepareCachedStatement(String queryString) throws SQLException;
+}
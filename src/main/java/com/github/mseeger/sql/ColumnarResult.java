@@ -0,0 +1,450 @@
+package com.github.mseeger.sql;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Query result stored column by column, as an alternative to a list of
+ * entity objects. Integer and floating point columns are stored in `int[]`,
+ * `long[]` or `double[]` arrays. All other columns are converted to strings
+ * and dictionary-encoded, so that repeated values (such as film titles in a
+ * multi-store result) are stored only once. SQL NULL values are recorded in
+ * a bitmap per column, which is allocated only if the column contains NULL.
+ * <p>
+ * No object is created per row, which reduces heap use for large results
+ * by several times. Rows can be accessed by `row`, which returns a view.
+ * Use `TableFormatter.asString(ColumnarResult)` in order to render the
+ * result.
+ * <p>
+ * Instances are immutable once created by `from`.
+ */
+public final class ColumnarResult {
+    private static final int initialCapacity = 64;
+    private static final EntryToStringConverter defaultConverter = new DefaultEntryToStringConverter();
+
+    public enum ColumnType { INT, LONG, DOUBLE, STRING }
+
+    private final String[] columnNames;
+    private final ColumnType[] columnTypes;
+    private final Column[] columns;
+    private final int numRows;
+
+    private ColumnarResult(String[] columnNames, ColumnType[] columnTypes, Column[] columns, int numRows) {
+        this.columnNames = columnNames;
+        this.columnTypes = columnTypes;
+        this.columns = columns;
+        this.numRows = numRows;
+    }
+
+    /**
+     * Reads all remaining rows of `resultSet`, which is not closed here.
+     * Column types are determined from the result set metadata: `TINYINT`,
+     * `SMALLINT` and signed `INTEGER` are stored as `int`, unsigned
+     * `INTEGER` and `BIGINT` as `long`, `REAL`, `FLOAT`, `DOUBLE`, `DECIMAL`
+     * and `NUMERIC` as `double`. All other columns (including dates) are
+     * stored as strings, as returned by `ResultSet.getString`. Storing
+     * `DECIMAL` as `double` means that it is formatted like a `BigDecimal`
+     * entity field, see `TableFormatter.asString(ColumnarResult)`.
+     *
+     * @param resultSet Result set
+     * @return Columnar result
+     */
+    public static ColumnarResult from(ResultSet resultSet) throws SQLException {
+        var metaData = resultSet.getMetaData();
+        int numColumns = metaData.getColumnCount();
+        var columnNames = new String[numColumns];
+        var columnTypes = new ColumnType[numColumns];
+        var columns = new Column[numColumns];
+        for (int i = 0; i < numColumns; i++) {
+            columnNames[i] = metaData.getColumnLabel(i + 1);
+            columnTypes[i] = storedColumnType(metaData, i + 1);
+            columns[i] = switch (columnTypes[i]) {
+                case INT -> new IntColumn();
+                case LONG -> new LongColumn();
+                case DOUBLE -> new DoubleColumn();
+                case STRING -> new StringColumn();
+            };
+        }
+        int numRows = 0;
+        while (resultSet.next()) {
+            for (int i = 0; i < numColumns; i++)
+                columns[i].read(resultSet, i + 1, numRows);
+            numRows++;
+        }
+        for (var column : columns)
+            column.trim(numRows);
+        return new ColumnarResult(columnNames, columnTypes, columns, numRows);
+    }
+
+    /**
+     * Same as `columnType`, except that `DECIMAL` and `NUMERIC` are stored as
+     * `double`. `ResultSetExporter` keeps them as strings, so that exports
+     * are exact.
+     */
+    private static ColumnType storedColumnType(ResultSetMetaData metaData, int index) throws SQLException {
+        return switch (metaData.getColumnType(index)) {
+            case Types.DECIMAL, Types.NUMERIC -> ColumnType.DOUBLE;
+            default -> columnType(metaData, index);
+        };
+    }
+
+    static ColumnType columnType(ResultSetMetaData metaData, int index) throws SQLException {
+        return switch (metaData.getColumnType(index)) {
+            case Types.TINYINT, Types.SMALLINT -> ColumnType.INT;
+            case Types.INTEGER -> metaData.isSigned(index) ? ColumnType.INT : ColumnType.LONG;
+            case Types.BIGINT -> ColumnType.LONG;
+            case Types.REAL, Types.FLOAT, Types.DOUBLE -> ColumnType.DOUBLE;
+            default -> ColumnType.STRING;
+        };
+    }
+
+    public int getNumRows() {
+        return numRows;
+    }
+
+    public int getNumColumns() {
+        return columns.length;
+    }
+
+    public String[] getColumnNames() {
+        return columnNames.clone();
+    }
+
+    public String getColumnName(int column) {
+        return columnNames[column];
+    }
+
+    public ColumnType getColumnType(int column) {
+        return columnTypes[column];
+    }
+
+    /**
+     * @param name Column label, case-insensitive
+     * @return Index of column
+     * @throws IllegalArgumentException if there is no such column
+     */
+    public int findColumn(String name) {
+        for (int i = 0; i < columnNames.length; i++) {
+            if (columnNames[i].equalsIgnoreCase(name))
+                return i;
+        }
+        throw new IllegalArgumentException("No column named '" + name + "'");
+    }
+
+    public boolean isNull(int row, int column) {
+        checkRow(row);
+        return columns[column].isNull(row);
+    }
+
+    /**
+     * @return Value of `INT` column, 0 for NULL
+     */
+    public int getInt(int row, int column) {
+        checkRow(row);
+        return typedColumn(column, ColumnType.INT, IntColumn.class).values[row];
+    }
+
+    /**
+     * @return Value of `INT` or `LONG` column, 0 for NULL
+     */
+    public long getLong(int row, int column) {
+        checkRow(row);
+        if (columnTypes[column] == ColumnType.INT)
+            return ((IntColumn) columns[column]).values[row];
+        return typedColumn(column, ColumnType.LONG, LongColumn.class).values[row];
+    }
+
+    /**
+     * @return Value of numerical column, 0 for NULL
+     */
+    public double getDouble(int row, int column) {
+        checkRow(row);
+        return switch (columns[column]) {
+            case IntColumn intColumn -> intColumn.values[row];
+            case LongColumn longColumn -> longColumn.values[row];
+            case DoubleColumn doubleColumn -> doubleColumn.values[row];
+            case StringColumn _ -> throw wrongType(column, ColumnType.DOUBLE);
+        };
+    }
+
+    /**
+     * @return Value of any column converted to string, or null for NULL
+     */
+    public String getString(int row, int column) {
+        checkRow(row);
+        var col = columns[column];
+        return col.isNull(row) ? null : col.valueAsString(row, defaultConverter);
+    }
+
+    /**
+     * @return Boxed value, or null for NULL
+     */
+    public Object getObject(int row, int column) {
+        checkRow(row);
+        return columns[column].getObject(row);
+    }
+
+    /**
+     * @param row Row index
+     * @return View of this row. Creating it is cheap, it is not cached
+     */
+    public Row row(int row) {
+        checkRow(row);
+        return new Row(this, row);
+    }
+
+    /**
+     * @return Views of all rows, in order
+     */
+    public Stream<Row> rows() {
+        return IntStream.range(0, numRows).mapToObj(row -> new Row(this, row));
+    }
+
+    /**
+     * Converts a value for `TableFormatter`. NULL is rendered as "null".
+     */
+    String valueAsString(int row, int column, EntryToStringConverter converter) {
+        var col = columns[column];
+        return col.isNull(row) ? "null" : col.valueAsString(row, converter);
+    }
+
+    private void checkRow(int row) {
+        if (row < 0 || row >= numRows)
+            throw new IndexOutOfBoundsException("row = " + row + ", numRows = " + numRows);
+    }
+
+    private <C extends Column> C typedColumn(int column, ColumnType type, Class<C> columnClass) {
+        if (columnTypes[column] != type)
+            throw wrongType(column, type);
+        return columnClass.cast(columns[column]);
+    }
+
+    private IllegalStateException wrongType(int column, ColumnType type) {
+        return new IllegalStateException(
+                "Column '" + columnNames[column] + "' has type " + columnTypes[column] + ", not " + type
+        );
+    }
+
+    /**
+     * View of a row of a `ColumnarResult`. Columns are given by index or by
+     * name.
+     */
+    public record Row(ColumnarResult result, int index) {
+        public boolean isNull(int column) {
+            return result.isNull(index, column);
+        }
+
+        public int getInt(int column) {
+            return result.getInt(index, column);
+        }
+
+        public int getInt(String name) {
+            return result.getInt(index, result.findColumn(name));
+        }
+
+        public long getLong(int column) {
+            return result.getLong(index, column);
+        }
+
+        public long getLong(String name) {
+            return result.getLong(index, result.findColumn(name));
+        }
+
+        public double getDouble(int column) {
+            return result.getDouble(index, column);
+        }
+
+        public double getDouble(String name) {
+            return result.getDouble(index, result.findColumn(name));
+        }
+
+        public String getString(int column) {
+            return result.getString(index, column);
+        }
+
+        public String getString(String name) {
+            return result.getString(index, result.findColumn(name));
+        }
+
+        public Object getObject(int column) {
+            return result.getObject(index, column);
+        }
+
+        public Object getObject(String name) {
+            return result.getObject(index, result.findColumn(name));
+        }
+    }
+
+    private static abstract sealed class Column permits IntColumn, LongColumn, DoubleColumn, StringColumn {
+        // Bit i is set if row i is NULL. Null if there are no NULL values
+        private long[] nulls = null;
+
+        abstract void read(ResultSet resultSet, int index, int row) throws SQLException;
+
+        abstract void trim(int numRows);
+
+        abstract String valueAsString(int row, EntryToStringConverter converter);
+
+        abstract Object getValue(int row);
+
+        final Object getObject(int row) {
+            return isNull(row) ? null : getValue(row);
+        }
+
+        final boolean isNull(int row) {
+            return nulls != null && (row >>> 6) < nulls.length && (nulls[row >>> 6] & (1L << row)) != 0;
+        }
+
+        final void readNull(ResultSet resultSet, int row) throws SQLException {
+            if (resultSet.wasNull()) {
+                if (nulls == null) {
+                    nulls = new long[(row >>> 6) + 1];
+                } else if ((row >>> 6) >= nulls.length) {
+                    nulls = Arrays.copyOf(nulls, Math.max((row >>> 6) + 1, 2 * nulls.length));
+                }
+                nulls[row >>> 6] |= 1L << row;
+            }
+        }
+
+        static int grow(int capacity, int row) {
+            return row < capacity ? capacity : capacity + (capacity >> 1);
+        }
+    }
+
+    private static final class IntColumn extends Column {
+        private int[] values = new int[initialCapacity];
+
+        @Override
+        void read(ResultSet resultSet, int index, int row) throws SQLException {
+            if (row >= values.length)
+                values = Arrays.copyOf(values, grow(values.length, row));
+            values[row] = resultSet.getInt(index);
+            readNull(resultSet, row);
+        }
+
+        @Override
+        void trim(int numRows) {
+            values = Arrays.copyOf(values, numRows);
+        }
+
+        @Override
+        String valueAsString(int row, EntryToStringConverter converter) {
+            return converter.convertInt(values[row]);
+        }
+
+        @Override
+        Object getValue(int row) {
+            return values[row];
+        }
+    }
+
+    private static final class LongColumn extends Column {
+        private long[] values = new long[initialCapacity];
+
+        @Override
+        void read(ResultSet resultSet, int index, int row) throws SQLException {
+            if (row >= values.length)
+                values = Arrays.copyOf(values, grow(values.length, row));
+            values[row] = resultSet.getLong(index);
+            readNull(resultSet, row);
+        }
+
+        @Override
+        void trim(int numRows) {
+            values = Arrays.copyOf(values, numRows);
+        }
+
+        @Override
+        String valueAsString(int row, EntryToStringConverter converter) {
+            return converter.convertLong(values[row]);
+        }
+
+        @Override
+        Object getValue(int row) {
+            return values[row];
+        }
+    }
+
+    private static final class DoubleColumn extends Column {
+        private double[] values = new double[initialCapacity];
+
+        @Override
+        void read(ResultSet resultSet, int index, int row) throws SQLException {
+            if (row >= values.length)
+                values = Arrays.copyOf(values, grow(values.length, row));
+            values[row] = resultSet.getDouble(index);
+            readNull(resultSet, row);
+        }
+
+        @Override
+        void trim(int numRows) {
+            values = Arrays.copyOf(values, numRows);
+        }
+
+        @Override
+        String valueAsString(int row, EntryToStringConverter converter) {
+            return converter.convertDouble(values[row]);
+        }
+
+        @Override
+        Object getValue(int row) {
+            return values[row];
+        }
+    }
+
+    /**
+     * Values are stored as codes into a dictionary of distinct strings. The
+     * code of NULL is -1.
+     */
+    private static final class StringColumn extends Column {
+        private int[] codes = new int[initialCapacity];
+        private String[] dictionary = new String[initialCapacity];
+        // Only used while reading
+        private HashMap<String, Integer> codesByValue = new HashMap<>();
+
+        @Override
+        void read(ResultSet resultSet, int index, int row) throws SQLException {
+            if (row >= codes.length)
+                codes = Arrays.copyOf(codes, grow(codes.length, row));
+            var value = resultSet.getString(index);
+            if (value == null) {
+                codes[row] = -1;
+                readNull(resultSet, row);
+                return;
+            }
+            Integer code = codesByValue.get(value);
+            if (code == null) {
+                code = codesByValue.size();
+                if (code >= dictionary.length)
+                    dictionary = Arrays.copyOf(dictionary, grow(dictionary.length, code));
+                dictionary[code] = value;
+                codesByValue.put(value, code);
+            }
+            codes[row] = code;
+        }
+
+        @Override
+        void trim(int numRows) {
+            codes = Arrays.copyOf(codes, numRows);
+            dictionary = Arrays.copyOf(dictionary, codesByValue.size());
+            codesByValue = null;
+        }
+
+        @Override
+        String valueAsString(int row, EntryToStringConverter converter) {
+            var value = dictionary[codes[row]];
+            return converter instanceof DefaultEntryToStringConverter ? value : converter.convert(value);
+        }
+
+        @Override
+        Object getValue(int row) {
+            return dictionary[codes[row]];
+        }
+    }
+}
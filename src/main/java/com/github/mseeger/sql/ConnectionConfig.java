@@ -1,5 +1,7 @@
 package com.github.mseeger.sql;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
 
 public class ConnectionConfig {
@@ -13,8 +15,26 @@ public class ConnectionConfig {
     private final int port;
     private final String host;
     private final String driverName;
+    private final Properties driverProperties;
+    private final List<Replica> replicas;
 
-    ConnectionConfig(
+    /**
+     * Read replica of the database described by a configuration. It is
+     * accessed with the same user, password, database and driver properties.
+     *
+     * @param host Host of replica
+     * @param port Port of replica
+     * @param weight Relative share of read-only queries sent to this replica,
+     *               if all replicas are equally busy. Must be positive
+     */
+    public record Replica(String host, int port, int weight) {
+        public Replica {
+            if (weight < 1)
+                throw new IllegalArgumentException("weight = " + weight + ", must be positive");
+        }
+    }
+
+    public ConnectionConfig(
             String user,
             String password,
             String database,
@@ -28,9 +48,29 @@ public class ConnectionConfig {
         this.port = port;
         this.host = host;
         this.driverName = driverName;
+        this.driverProperties = new Properties();
+        this.replicas = List.of();
     }
 
-    ConnectionConfig(
+    private ConnectionConfig(
+            ConnectionConfig other,
+            String host,
+            int port,
+            Properties driverProperties,
+            List<Replica> replicas
+    ) {
+        this.user = other.user;
+        this.password = other.password;
+        this.database = other.database;
+        this.port = port;
+        this.host = host;
+        this.driverName = other.driverName;
+        this.driverProperties = new Properties();
+        this.driverProperties.putAll(driverProperties);
+        this.replicas = List.copyOf(replicas);
+    }
+
+    public ConnectionConfig(
             String user,
             String password,
             String database,
@@ -40,7 +80,7 @@ public class ConnectionConfig {
         this(user, password, database, port, host, defaultDriverName);
     }
 
-    ConnectionConfig(
+    public ConnectionConfig(
             String user,
             String password,
             String database,
@@ -49,7 +89,7 @@ public class ConnectionConfig {
         this(user, password, database, port, defaultHost, defaultDriverName);
     }
 
-    ConnectionConfig(
+    public ConnectionConfig(
             String user,
             String password,
             String database
@@ -85,8 +125,98 @@ public class ConnectionConfig {
         return String.format("%s://%s:%d/%s", driverName, host, port, database);
     }
 
+    /**
+     * Returns a copy of this configuration, where a driver property is set in
+     * addition. Driver properties are passed with `user` and `password` when
+     * connecting.
+     *
+     * @param key Name of driver property, e.g. "useServerPrepStmts"
+     * @param value Value of driver property
+     * @return New configuration
+     */
+    public ConnectionConfig withDriverProperty(String key, String value) {
+        var newProperties = new Properties();
+        newProperties.putAll(driverProperties);
+        newProperties.put(key, value);
+        return new ConnectionConfig(this, host, port, newProperties, replicas);
+    }
+
+    /**
+     * Returns a copy of this configuration, where a read replica is added.
+     * The host of this configuration is the primary, which receives all
+     * queries which are not read-only. See `ReplicaRoutingConnectionSource`.
+     *
+     * @param host Host of replica
+     * @param port Port of replica
+     * @param weight Relative share of read-only queries, see `Replica`
+     * @return New configuration
+     */
+    public ConnectionConfig withReplica(String host, int port, int weight) {
+        var newReplicas = new ArrayList<>(replicas);
+        newReplicas.add(new Replica(host, port, weight));
+        return new ConnectionConfig(this, this.host, this.port, driverProperties, newReplicas);
+    }
+
+    public ConnectionConfig withReplica(String host, int weight) {
+        return withReplica(host, port, weight);
+    }
+
+    /**
+     * @return Read replicas, empty if there are none
+     */
+    public List<Replica> getReplicas() {
+        return replicas;
+    }
+
+    /**
+     * @param replica Replica of this configuration
+     * @return Configuration for connecting to `replica`, without replicas
+     */
+    public ConnectionConfig forReplica(Replica replica) {
+        return new ConnectionConfig(this, replica.host(), replica.port(), driverProperties, List.of());
+    }
+
+    /**
+     * Switches server-side prepared statements on or off. If on, the server
+     * parses the query when the statement is prepared, and only parameters
+     * are sent when executing it. Combined with the statement cache of
+     * `ConnectionPool`, a query is then parsed once per connection.
+     *
+     * @param enabled Use server-side prepared statements?
+     * @return New configuration
+     */
+    public ConnectionConfig withServerSidePrepares(boolean enabled) {
+        return withDriverProperty("useServerPrepStmts", Boolean.toString(enabled));
+    }
+
+    /**
+     * Switches cursor-based fetching on or off. If on, a positive fetch size
+     * set on a statement makes the server return rows in batches of this
+     * size. If off, rows are streamed one by one for fetch size
+     * `Integer.MIN_VALUE`, and all rows are read into memory otherwise.
+     *
+     * @param enabled Use cursor-based fetching?
+     * @return New configuration
+     */
+    public ConnectionConfig withCursorFetch(boolean enabled) {
+        return withDriverProperty("useCursorFetch", Boolean.toString(enabled));
+    }
+
+    /**
+     * Switches rewriting of batched statements on or off. If on, the driver
+     * sends a batch of INSERT statements as a single multi-row INSERT, which
+     * is much faster for large batches.
+     *
+     * @param enabled Rewrite batched statements?
+     * @return New configuration
+     */
+    public ConnectionConfig withRewriteBatchedStatements(boolean enabled) {
+        return withDriverProperty("rewriteBatchedStatements", Boolean.toString(enabled));
+    }
+
     public Properties getProperties() {
         var properties = new Properties();
+        properties.putAll(driverProperties);
         properties.put("user", user);
         properties.put("password", password);
         return properties;
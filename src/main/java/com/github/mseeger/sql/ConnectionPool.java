@@ -0,0 +1,364 @@
+package com.github.mseeger.sql;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Simple connection pool, creating physical connections from a
+ * `ConnectionConfig`.
+ * <p>
+ * Connections handed out by `getConnection` are proxies. Closing them returns
+ * the physical connection to the pool. At most `maxSize` connections are
+ * borrowed at any time. Further callers wait in FIFO order, for at most
+ * the borrow timeout. Idle connections are kept in LIFO order, so that
+ * rarely used ones at the tail are evicted by a background thread once they
+ * exceed the idle timeout. Connections older than the maximum lifetime are
+ * closed instead of being reused.
+ * <p>
+ * Each physical connection keeps a `StatementCache`, which is used by
+ * `SQLQuery.getStatement`, so that a query string is prepared once per
+ * connection.
+ */
+public class ConnectionPool implements ConnectionSource {
+    private static final long minHousekeepingPeriodMillis = 1000;
+    private static final long maxHousekeepingPeriodMillis = 30000;
+
+    private final ConnectionPoolConfig poolConfig;
+    private final ConnectionSource physicalSource;
+    private final Semaphore borrowPermits;
+    private final ConcurrentLinkedDeque<PooledEntry> idleEntries = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger numOpen = new AtomicInteger();
+    private final ScheduledExecutorService housekeeper;
+    private volatile boolean closed = false;
+
+    public ConnectionPool(ConnectionConfig connectionConfig, ConnectionPoolConfig poolConfig) {
+        this.poolConfig = poolConfig;
+        this.physicalSource = new DriverManagerConnectionSource(connectionConfig);
+        this.borrowPermits = new Semaphore(poolConfig.getMaxSize(), true);
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "connection-pool-housekeeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.clamp(
+                poolConfig.getIdleTimeout().toMillis() / 2,
+                minHousekeepingPeriodMillis,
+                maxHousekeepingPeriodMillis
+        );
+        housekeeper.scheduleWithFixedDelay(
+                this::housekeeping, 0, period, TimeUnit.MILLISECONDS
+        );
+    }
+
+    public ConnectionPool(ConnectionConfig connectionConfig) {
+        this(connectionConfig, new ConnectionPoolConfig());
+    }
+
+    /**
+     * Borrows a connection from the pool. Waits if `maxSize` connections are
+     * borrowed already.
+     *
+     * @return Connection, must be closed in order to return it to the pool
+     * @throws SQLTimeoutException if no connection becomes available within
+     *                             the borrow timeout
+     */
+    @Override
+    public Connection getConnection() throws SQLException {
+        checkNotClosed();
+        try {
+            if (!borrowPermits.tryAcquire(
+                    poolConfig.getBorrowTimeout().toNanos(), TimeUnit.NANOSECONDS
+            ))
+                throw new SQLTimeoutException(
+                        "No connection available after " + poolConfig.getBorrowTimeout()
+                );
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for connection", e);
+        }
+        try {
+            return createProxy(borrowEntry());
+        } catch (SQLException | RuntimeException e) {
+            borrowPermits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Closes all idle connections. Borrowed connections are closed once they
+     * are returned.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        housekeeper.shutdownNow();
+        PooledEntry entry;
+        while ((entry = idleEntries.pollFirst()) != null)
+            discard(entry);
+    }
+
+    public int getNumBorrowed() {
+        return poolConfig.getMaxSize() - borrowPermits.availablePermits();
+    }
+
+    public int getNumIdle() {
+        return idleEntries.size();
+    }
+
+    public int getNumOpen() {
+        return numOpen.get();
+    }
+
+    private void checkNotClosed() throws SQLException {
+        if (closed)
+            throw new SQLException("Connection pool is closed");
+    }
+
+    /**
+     * Takes the most recently used idle connection which is still alive, or
+     * creates a new one. Must be called with a borrow permit. Connections
+     * returned within the validation interval are not validated.
+     */
+    private PooledEntry borrowEntry() throws SQLException {
+        long now = System.nanoTime();
+        long validationIntervalNanos = poolConfig.getValidationInterval().toNanos();
+        PooledEntry entry;
+        while ((entry = idleEntries.pollFirst()) != null) {
+            if (entry.isExpired(now)
+                    || (now - entry.lastReleased > validationIntervalNanos && !isValid(entry))) {
+                discard(entry);
+            } else {
+                return entry;
+            }
+        }
+        return openEntry();
+    }
+
+    /**
+     * `isValid(0)` means no timeout, so timeouts below one second are
+     * rounded up to one second.
+     *
+     * @param timeout Positive timeout
+     * @return Timeout for `Connection.isValid`
+     */
+    static int validationTimeoutSeconds(Duration timeout) {
+        return Math.clamp((timeout.toMillis() + 999) / 1000, 1, Integer.MAX_VALUE);
+    }
+
+    private boolean isValid(PooledEntry entry) {
+        var timeout = poolConfig.getValidationTimeout();
+        if (timeout.isZero() || timeout.isNegative())
+            return true;
+        try {
+            return entry.connection.isValid(validationTimeoutSeconds(timeout));
+        } catch (SQLException _) {
+            return false;
+        }
+    }
+
+    private PooledEntry openEntry() throws SQLException {
+        var connection = physicalSource.getConnection();
+        PooledEntry entry;
+        try {
+            entry = new PooledEntry(connection);
+        } catch (SQLException | RuntimeException e) {
+            try {
+                connection.close();
+            } catch (SQLException closeException) {
+                e.addSuppressed(closeException);
+            }
+            throw e;
+        }
+        numOpen.incrementAndGet();
+        return entry;
+    }
+
+    private void discard(PooledEntry entry) {
+        numOpen.decrementAndGet();
+        if (entry.statementCache != null)
+            entry.statementCache.clear();
+        try {
+            entry.connection.close();
+        } catch (SQLException _) {}
+    }
+
+    /**
+     * Called when a borrowed connection is closed. The physical connection is
+     * reset and put back at the head of the idle list, unless it has expired.
+     */
+    private void release(PooledEntry entry, boolean dirty) {
+        try {
+            if (closed || entry.isExpired(System.nanoTime())) {
+                discard(entry);
+            } else {
+                try {
+                    if (dirty)
+                        resetState(entry);
+                    entry.lastReleased = System.nanoTime();
+                    idleEntries.offerFirst(entry);
+                    // `close` may have drained the idle list in between.
+                    // Only the thread which removes the entry may close it
+                    if (closed && idleEntries.removeFirstOccurrence(entry))
+                        discard(entry);
+                } catch (SQLException _) {
+                    discard(entry);
+                }
+            }
+        } finally {
+            borrowPermits.release();
+        }
+    }
+
+    /**
+     * Restores the session state the physical connection had when it was
+     * opened, so that changes of one borrower do not leak to the next.
+     */
+    private static void resetState(PooledEntry entry) throws SQLException {
+        var connection = entry.connection;
+        if (!connection.getAutoCommit()) {
+            connection.rollback();
+            connection.setAutoCommit(true);
+        }
+        if (connection.isReadOnly())
+            connection.setReadOnly(false);
+        if (entry.initialCatalog != null && !entry.initialCatalog.equals(connection.getCatalog()))
+            connection.setCatalog(entry.initialCatalog);
+        if (connection.getTransactionIsolation() != entry.initialIsolation)
+            connection.setTransactionIsolation(entry.initialIsolation);
+        connection.clearWarnings();
+    }
+
+    /**
+     * Evicts expired connections and connections idle for too long, starting
+     * from the least recently used, then opens connections up to `minSize`.
+     */
+    private void housekeeping() {
+        long now = System.nanoTime();
+        long idleTimeoutNanos = poolConfig.getIdleTimeout().toNanos();
+        Iterator<PooledEntry> iterator = idleEntries.descendingIterator();
+        while (iterator.hasNext()) {
+            var entry = iterator.next();
+            boolean evict = entry.isExpired(now) || (
+                    now - entry.lastReleased > idleTimeoutNanos
+                            && numOpen.get() > poolConfig.getMinSize()
+            );
+            // Only the thread which removes the entry may close it
+            if (evict && idleEntries.removeFirstOccurrence(entry))
+                discard(entry);
+        }
+        try {
+            while (!closed && numOpen.get() < poolConfig.getMinSize())
+                idleEntries.offerLast(openEntry());
+        } catch (SQLException _) {
+            // Database not reachable right now, retry with next run
+        }
+    }
+
+    private Connection createProxy(PooledEntry entry) {
+        return (Connection) Proxy.newProxyInstance(
+                CachingConnection.class.getClassLoader(),
+                new Class<?>[]{CachingConnection.class},
+                new ProxyHandler(entry)
+        );
+    }
+
+    private class PooledEntry {
+        private final Connection connection;
+        private final StatementCache statementCache;
+        private final String initialCatalog;
+        private final int initialIsolation;
+        private final long created;
+        private volatile long lastReleased;
+
+        private PooledEntry(Connection connection) throws SQLException {
+            this.connection = connection;
+            this.initialCatalog = connection.getCatalog();
+            this.initialIsolation = connection.getTransactionIsolation();
+            int cacheSize = poolConfig.getStatementCacheSize();
+            this.statementCache = cacheSize > 0
+                    ? new StatementCache(connection, cacheSize)
+                    : null;
+            this.created = System.nanoTime();
+            this.lastReleased = created;
+        }
+
+        private boolean isExpired(long now) {
+            return now - created > poolConfig.getMaxLifetime().toNanos();
+        }
+    }
+
+    /**
+     * Forwards all calls to the physical connection, except for `close`,
+     * which returns it to the pool, and `prepareCachedStatement`, which uses
+     * the statement cache. Calls which change session state mark
+     * the connection as dirty, so that it is reset on return. `unwrap` does
+     * not expose the physical connection, which must not be closed or
+     * reconfigured behind the pool's back.
+     */
+    private class ProxyHandler implements InvocationHandler {
+        private final PooledEntry entry;
+        private boolean returned = false;
+        private boolean dirty = false;
+
+        private ProxyHandler(PooledEntry entry) {
+            this.entry = entry;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!returned) {
+                        returned = true;
+                        release(entry, dirty);
+                    }
+                    return null;
+                case "isClosed":
+                    return returned || entry.connection.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled[" + entry.connection + "]";
+                case "setAutoCommit", "setReadOnly", "setCatalog", "setTransactionIsolation":
+                    dirty = true;
+                    break;
+                case "isWrapperFor":
+                    return ((Class<?>) args[0]).isInstance(proxy);
+                case "unwrap":
+                    if (((Class<?>) args[0]).isInstance(proxy))
+                        return proxy;
+                    throw new SQLException(
+                            "Pooled connection is no wrapper for " + ((Class<?>) args[0]).getName()
+                    );
+            }
+            if (returned)
+                throw new SQLException("Connection has been returned to the pool");
+            if (method.getName().equals("prepareCachedStatement")) {
+                var queryString = (String) args[0];
+                return entry.statementCache != null
+                        ? entry.statementCache.prepare(queryString)
+                        : entry.connection.prepareStatement(queryString);
+            }
+            try {
+                return method.invoke(entry.connection, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
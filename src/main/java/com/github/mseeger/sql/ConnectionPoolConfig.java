@@ -0,0 +1,143 @@
+package com.github.mseeger.sql;
+
+import java.time.Duration;
+
+/**
+ * Settings for `ConnectionPool`.
+ */
+public class ConnectionPoolConfig {
+    public static final int defaultMinSize = 1;
+    public static final int defaultMaxSize = 10;
+    public static final Duration defaultIdleTimeout = Duration.ofMinutes(10);
+    public static final Duration defaultMaxLifetime = Duration.ofMinutes(30);
+    public static final Duration defaultBorrowTimeout = Duration.ofSeconds(30);
+    public static final Duration defaultValidationTimeout = Duration.ofSeconds(5);
+    public static final Duration defaultValidationInterval = Duration.ofMillis(500);
+    public static final int defaultStatementCacheSize = 32;
+
+    private final int minSize;
+    private final int maxSize;
+    private final Duration idleTimeout;
+    private final Duration maxLifetime;
+    private final Duration borrowTimeout;
+    private final Duration validationTimeout;
+    private final Duration validationInterval;
+    private final int statementCacheSize;
+
+    /**
+     * @param minSize Number of connections kept open even if idle
+     * @param maxSize Maximum number of connections borrowed at the same time
+     * @param idleTimeout Connections idle for longer are closed, as long as
+     *                    more than `minSize` connections are open
+     * @param maxLifetime Connections older than this are closed once they are
+     *                    returned or found idle
+     * @param borrowTimeout Maximum time a caller waits for a connection.
+     *                      Waiting callers are served in FIFO order
+     * @param validationTimeout Timeout for validating a connection on borrow,
+     *                          rounded up to whole seconds. If zero,
+     *                          connections are not validated
+     * @param validationInterval Connections returned to the pool more
+     *                           recently than this are not validated on
+     *                           borrow, which saves a round trip
+     * @param statementCacheSize Maximum number of prepared statements cached
+     *                           per connection. If zero, statements are not
+     *                           cached
+     */
+    public ConnectionPoolConfig(
+            int minSize,
+            int maxSize,
+            Duration idleTimeout,
+            Duration maxLifetime,
+            Duration borrowTimeout,
+            Duration validationTimeout,
+            Duration validationInterval,
+            int statementCacheSize
+    ) {
+        if (minSize < 0 || maxSize < 1 || minSize > maxSize)
+            throw new IllegalArgumentException(
+                    "Need 0 <= minSize <= maxSize and maxSize >= 1, but minSize = "
+                            + minSize + ", maxSize = " + maxSize
+            );
+        if (statementCacheSize < 0)
+            throw new IllegalArgumentException(
+                    "statementCacheSize = " + statementCacheSize + ", must not be negative"
+            );
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.idleTimeout = idleTimeout;
+        this.maxLifetime = maxLifetime;
+        this.borrowTimeout = borrowTimeout;
+        this.validationTimeout = validationTimeout;
+        this.validationInterval = validationInterval;
+        this.statementCacheSize = statementCacheSize;
+    }
+
+    public ConnectionPoolConfig(
+            int minSize,
+            int maxSize,
+            Duration idleTimeout,
+            Duration maxLifetime,
+            Duration borrowTimeout,
+            Duration validationTimeout,
+            int statementCacheSize
+    ) {
+        this(
+                minSize,
+                maxSize,
+                idleTimeout,
+                maxLifetime,
+                borrowTimeout,
+                validationTimeout,
+                defaultValidationInterval,
+                statementCacheSize
+        );
+    }
+
+    public ConnectionPoolConfig(int minSize, int maxSize) {
+        this(
+                minSize,
+                maxSize,
+                defaultIdleTimeout,
+                defaultMaxLifetime,
+                defaultBorrowTimeout,
+                defaultValidationTimeout,
+                defaultStatementCacheSize
+        );
+    }
+
+    public ConnectionPoolConfig() {
+        this(defaultMinSize, defaultMaxSize);
+    }
+
+    public int getMinSize() {
+        return minSize;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public Duration getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    public Duration getMaxLifetime() {
+        return maxLifetime;
+    }
+
+    public Duration getBorrowTimeout() {
+        return borrowTimeout;
+    }
+
+    public Duration getValidationTimeout() {
+        return validationTimeout;
+    }
+
+    public Duration getValidationInterval() {
+        return validationInterval;
+    }
+
+    public int getStatementCacheSize() {
+        return statementCacheSize;
+    }
+}
@@ -0,0 +1,35 @@
+package com.github.mseeger.sql;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Source of JDBC connections used by `QueryExecutor`. Connections obtained
+ * here must be closed by the caller once done. For a pooled source, this
+ * returns the connection to the pool.
+ */
+public interface ConnectionSource extends AutoCloseable {
+    /**
+     * @return Connection, to be closed by the caller
+     */
+    Connection getConnection() throws SQLException;
+
+    /**
+     * Returns a connection suitable for read-only queries if `readOnly` is
+     * true. Sources which know about read replicas may return a connection
+     * to one of them. The default is `getConnection()`.
+     *
+     * @param readOnly Is the connection used for read-only queries only?
+     * @return Connection, to be closed by the caller
+     */
+    default Connection getConnection(boolean readOnly) throws SQLException {
+        return getConnection();
+    }
+
+    /**
+     * Releases resources held by the source. Connections handed out before
+     * may still be closed afterwards.
+     */
+    @Override
+    void close() throws SQLException;
+}
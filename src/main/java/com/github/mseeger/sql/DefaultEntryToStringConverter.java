@@ -3,6 +3,21 @@ package com.github.mseeger.sql;
 class DefaultEntryToStringConverter implements EntryToStringConverter {
     @Override
     public String convert(Object x) {
-        return x.toString();
+        return String.valueOf(x);
+    }
+
+    @Override
+    public String convertInt(int x) {
+        return Integer.toString(x);
+    }
+
+    @Override
+    public String convertLong(long x) {
+        return Long.toString(x);
+    }
+
+    @Override
+    public String convertDouble(double x) {
+        return Double.toString(x);
     }
 }
@@ -0,0 +1,27 @@
+package com.github.mseeger.sql;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+
+/**
+ * Creates a new connection via `DriverManager` for every call. This is simple,
+ * but each call pays for the TCP and authentication handshake.
+ */
+public class DriverManagerConnectionSource implements ConnectionSource {
+    private final ConnectionConfig connectionConfig;
+
+    public DriverManagerConnectionSource(ConnectionConfig connectionConfig) {
+        this.connectionConfig = connectionConfig;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return DriverManager.getConnection(
+                connectionConfig.getURL(), connectionConfig.getProperties()
+        );
+    }
+
+    @Override
+    public void close() {}
+}
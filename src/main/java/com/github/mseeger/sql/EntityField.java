@@ -1,33 +1,93 @@
 package com.github.mseeger.sql;
 
-import java.lang.reflect.InvocationTargetException;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
 import java.math.BigDecimal;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
 
+/**
+ * Field of an entity class, accessed through its getter.
+ * <p>
+ * The getter is compiled once into a function object (via
+ * `LambdaMetafactory`, or a `MethodHandle` if this is not possible), so that
+ * reading a value does not go through `Method.invoke`. Getters returning
+ * `int`, `long` or `double` are compiled into primitive functions, so that
+ * their values are not boxed when read. `int` and `long` values without
+ * format string, and `double` values with a fixed precision format such as
+ * the default `%.2f`, are also converted to strings without boxing.
+ */
 public class EntityField {
     private static final String defaultFloatFormat = "%.2f";
 
+    enum Kind { INT, LONG, DOUBLE, OBJECT }
+
     private final String name;
-    private final Method getter;
+    private final Class<?> type;
+    private final Kind kind;
     private final EntryToStringConverter converter;
+    // Exactly one of these is set, depending on `kind`
+    private final ToIntFunction<Object> intGetter;
+    private final ToLongFunction<Object> longGetter;
+    private final ToDoubleFunction<Object> doubleGetter;
+    private final Function<Object, Object> objectGetter;
 
+    @SuppressWarnings("unchecked")
     public EntityField(Method getter, String format) {
-        this.getter = getter;
         var methodName = getter.getName();
         if (!methodName.startsWith("get"))
             throw new IllegalArgumentException("Method " + methodName + " must start with 'get'");
         // Infer field name from name of getter method
         this.name = methodName.substring(3, 4).toLowerCase() + methodName.substring(4);
-        this.converter = createConverter(getter, format);
+        this.type = getter.getReturnType();
+        this.converter = createConverter(type, format);
+        if (type == int.class) {
+            this.kind = Kind.INT;
+        } else if (type == long.class) {
+            this.kind = Kind.LONG;
+        } else if (type == double.class) {
+            this.kind = Kind.DOUBLE;
+        } else {
+            this.kind = Kind.OBJECT;
+        }
+        Object function = compileGetter(getter, kind);
+        this.intGetter = kind == Kind.INT ? (ToIntFunction<Object>) function : null;
+        this.longGetter = kind == Kind.LONG ? (ToLongFunction<Object>) function : null;
+        this.doubleGetter = kind == Kind.DOUBLE ? (ToDoubleFunction<Object>) function : null;
+        this.objectGetter = kind == Kind.OBJECT ? (Function<Object, Object>) function : null;
     }
 
     public EntityField(Method getter) {
         this(getter, null);
     }
 
-    private EntryToStringConverter createConverter(Method getter, String format) {
+    /**
+     * @param fieldType Type of field
+     * @param format Format string given for the field, or null
+     * @return Converter for values of the field, see `effectiveFormat`
+     */
+    static EntryToStringConverter createConverter(Class<?> fieldType, String format) {
+        format = effectiveFormat(fieldType, format);
+        if (format == null)
+            return new DefaultEntryToStringConverter();
+        else
+            return new FormatEntryToStringConverter(format);
+    }
+
+    /**
+     * @param fieldType Type of field
+     * @param format Format string given for the field, or null
+     * @return Format string used for the field, or null if values are
+     * converted by `toString`. Floating point fields are formatted with a
+     * default format string
+     */
+    static String effectiveFormat(Class<?> fieldType, String format) {
         if (format == null) {
-            var fieldType = getter.getReturnType();
             if (fieldType == float.class
                     || fieldType == double.class
                     || fieldType == short.class
@@ -38,27 +98,191 @@ public class EntityField {
             )
                 format = defaultFloatFormat;
         }
-        if (format == null)
-            return new DefaultEntryToStringConverter();
-        else
-            return new FormatEntryToStringConverter(format);
+        return format;
+    }
+
+    /**
+     * Compiles `getter` into a `ToIntFunction`, `ToLongFunction`,
+     * `ToDoubleFunction` or `Function`, depending on `kind`.
+     */
+    private Object compileGetter(Method getter, Kind kind) {
+        MethodHandle handle;
+        try {
+            getter.setAccessible(true);
+            handle = MethodHandles.lookup().unreflect(getter);
+        } catch (IllegalAccessException | RuntimeException e) {
+            var ex = new IllegalArgumentException("Cannot access getter of '" + name + "'");
+            ex.initCause(e);
+            throw ex;
+        }
+        try {
+            return compileWithLambdaMetafactory(getter, handle, kind);
+        } catch (VirtualMachineError e) {
+            throw e;
+        } catch (Throwable _) {
+            // For example, if the entity class is not accessible from here
+            return compileWithMethodHandle(handle, kind);
+        }
+    }
+
+    private static Object compileWithLambdaMetafactory(
+            Method getter,
+            MethodHandle handle,
+            Kind kind
+    ) throws Throwable {
+        var lookup = MethodHandles.privateLookupIn(getter.getDeclaringClass(), MethodHandles.lookup());
+        Class<?> interfaceType;
+        String interfaceMethod;
+        Class<?> returnType;
+        switch (kind) {
+            case INT -> {
+                interfaceType = ToIntFunction.class;
+                interfaceMethod = "applyAsInt";
+                returnType = int.class;
+            }
+            case LONG -> {
+                interfaceType = ToLongFunction.class;
+                interfaceMethod = "applyAsLong";
+                returnType = long.class;
+            }
+            case DOUBLE -> {
+                interfaceType = ToDoubleFunction.class;
+                interfaceMethod = "applyAsDouble";
+                returnType = double.class;
+            }
+            default -> {
+                interfaceType = Function.class;
+                interfaceMethod = "apply";
+                returnType = Object.class;
+            }
+        }
+        // Primitive values of other types (e.g., `float`) are boxed
+        Class<?> instantiatedReturnType = kind == Kind.OBJECT
+                ? handle.type().wrap().returnType()
+                : returnType;
+        var site = LambdaMetafactory.metafactory(
+                lookup,
+                interfaceMethod,
+                MethodType.methodType(interfaceType),
+                MethodType.methodType(returnType, Object.class),
+                handle,
+                MethodType.methodType(instantiatedReturnType, getter.getDeclaringClass())
+        );
+        return site.getTarget().invoke();
+    }
+
+    private static Object compileWithMethodHandle(MethodHandle handle, Kind kind) {
+        return switch (kind) {
+            case INT -> {
+                var typed = handle.asType(MethodType.methodType(int.class, Object.class));
+                ToIntFunction<Object> function = entity -> {
+                    try {
+                        return (int) typed.invokeExact(entity);
+                    } catch (RuntimeException | Error e) {
+                        throw e;
+                    } catch (Throwable e) {
+                        // Checked exception declared by the getter
+                        throw new IllegalStateException(e);
+                    }
+                };
+                yield function;
+            }
+            case LONG -> {
+                var typed = handle.asType(MethodType.methodType(long.class, Object.class));
+                ToLongFunction<Object> function = entity -> {
+                    try {
+                        return (long) typed.invokeExact(entity);
+                    } catch (RuntimeException | Error e) {
+                        throw e;
+                    } catch (Throwable e) {
+                        // Checked exception declared by the getter
+                        throw new IllegalStateException(e);
+                    }
+                };
+                yield function;
+            }
+            case DOUBLE -> {
+                var typed = handle.asType(MethodType.methodType(double.class, Object.class));
+                ToDoubleFunction<Object> function = entity -> {
+                    try {
+                        return (double) typed.invokeExact(entity);
+                    } catch (RuntimeException | Error e) {
+                        throw e;
+                    } catch (Throwable e) {
+                        // Checked exception declared by the getter
+                        throw new IllegalStateException(e);
+                    }
+                };
+                yield function;
+            }
+            default -> {
+                var typed = handle.asType(MethodType.methodType(Object.class, Object.class));
+                Function<Object, Object> function = entity -> {
+                    try {
+                        return typed.invokeExact(entity);
+                    } catch (RuntimeException | Error e) {
+                        throw e;
+                    } catch (Throwable e) {
+                        // Checked exception declared by the getter
+                        throw new IllegalStateException(e);
+                    }
+                };
+                yield function;
+            }
+        };
     }
 
     public String getName() {
         return name;
     }
 
+    /**
+     * @return Return type of the getter
+     */
+    public Class<?> getType() {
+        return type;
+    }
+
+    Kind getKind() {
+        return kind;
+    }
+
     public Object getValue(Object entity) {
-        try {
-            return getter.invoke(entity);
-        } catch (InvocationTargetException | IllegalAccessException e) {
-            var ex = new IllegalArgumentException("Cannot get value of '" + name + "' from entity");
-            ex.initCause(e);
-            throw ex;
-        }
+        return switch (kind) {
+            case INT -> intGetter.applyAsInt(entity);
+            case LONG -> longGetter.applyAsLong(entity);
+            case DOUBLE -> doubleGetter.applyAsDouble(entity);
+            case OBJECT -> objectGetter.apply(entity);
+        };
+    }
+
+    /**
+     * Only for fields with getter returning `int`.
+     */
+    public int getIntValue(Object entity) {
+        return intGetter.applyAsInt(entity);
+    }
+
+    /**
+     * Only for fields with getter returning `long`.
+     */
+    public long getLongValue(Object entity) {
+        return longGetter.applyAsLong(entity);
+    }
+
+    /**
+     * Only for fields with getter returning `double`.
+     */
+    public double getDoubleValue(Object entity) {
+        return doubleGetter.applyAsDouble(entity);
     }
 
     public String getValueAsString(Object entity) {
-        return converter.convert(getValue(entity));
+        return switch (kind) {
+            case INT -> converter.convertInt(intGetter.applyAsInt(entity));
+            case LONG -> converter.convertLong(longGetter.applyAsLong(entity));
+            case DOUBLE -> converter.convertDouble(doubleGetter.applyAsDouble(entity));
+            case OBJECT -> converter.convert(objectGetter.apply(entity));
+        };
     }
 }
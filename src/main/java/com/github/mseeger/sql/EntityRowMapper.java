@@ -0,0 +1,295 @@
+package com.github.mseeger.sql;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.RecordComponent;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Row mapper derived from an entity class, so that no mapper has to be
+ * written by hand.
+ * <p>
+ * The entity is created by calling a constructor with one argument per
+ * column. For a record class, this is the canonical constructor. Otherwise,
+ * the class needs a static `String[]` field named `columnNames` (see
+ * `EntityToRecordConverter`), and a public constructor whose parameters
+ * correspond to these names in this order.
+ * <p>
+ * Constructor parameters are matched to result set columns by name, where
+ * case and underscores are ignored (e.g., `filmID` matches `film_id`). If
+ * this fails and the number of columns equals the number of parameters,
+ * they are matched by position. This is done once per shape of result set
+ * (column labels and types). The resulting plan binds a typed read by column
+ * index to each constructor parameter, so that mapping a row does not box
+ * primitive values. Plans are cached, and `forResultSet` returns the plan
+ * for a result set, so that `QueryExecutor` looks it up only once per
+ * query.
+ *
+ * @param <T> Entity type
+ */
+public class EntityRowMapper<T> implements RowMapper<T> {
+    private static final ClassValue<EntityRowMapper<?>> cache = new ClassValue<>() {
+        @Override
+        protected EntityRowMapper<?> computeValue(Class<?> type) {
+            return new EntityRowMapper<>(type);
+        }
+    };
+
+    private final Class<T> entityType;
+    private final String[] parameterNames;
+    private final Class<?>[] parameterTypes;
+    private final MethodHandle constructor;
+    // Plans by column labels and types of result sets
+    private final ConcurrentHashMap<String, Plan<T>> plans = new ConcurrentHashMap<>();
+
+    private EntityRowMapper(Class<T> entityType) {
+        this.entityType = entityType;
+        Constructor<?> ctor;
+        if (entityType.isRecord()) {
+            RecordComponent[] components = entityType.getRecordComponents();
+            parameterNames = Arrays.stream(components)
+                    .map(RecordComponent::getName)
+                    .toArray(String[]::new);
+            parameterTypes = Arrays.stream(components)
+                    .map(RecordComponent::getType)
+                    .toArray(Class<?>[]::new);
+            try {
+                ctor = entityType.getDeclaredConstructor(parameterTypes);
+            } catch (NoSuchMethodException e) {
+                throw new IllegalStateException(e);
+            }
+        } else {
+            parameterNames = EntityToRecordConverter.columnNamesByReflection(entityType);
+            if (parameterNames == null)
+                throw new IllegalArgumentException(
+                        "'" + entityType.getName() + "' must be a record or have a static columnNames field"
+                );
+            ctor = findConstructor(entityType, parameterNames);
+            parameterTypes = ctor.getParameterTypes();
+        }
+        try {
+            ctor.setAccessible(true);
+            this.constructor = MethodHandles.lookup().unreflectConstructor(ctor);
+        } catch (IllegalAccessException | RuntimeException e) {
+            var ex = new IllegalArgumentException("Cannot access constructor of '" + entityType.getName() + "'");
+            ex.initCause(e);
+            throw ex;
+        }
+    }
+
+    /**
+     * Returns row mapper for `entityType`, which is created only once per
+     * class.
+     *
+     * @param entityType Entity class
+     * @return Row mapper
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> EntityRowMapper<T> forEntityType(Class<T> entityType) {
+        return (EntityRowMapper<T>) cache.get(entityType);
+    }
+
+    /**
+     * Prefers the public constructor whose parameter types are the return
+     * types of the getters for `columnNames`.
+     */
+    private static Constructor<?> findConstructor(Class<?> entityType, String[] columnNames) {
+        var candidates = new ArrayList<Constructor<?>>();
+        for (var ctor : entityType.getConstructors()) {
+            if (ctor.getParameterCount() == columnNames.length)
+                candidates.add(ctor);
+        }
+        if (candidates.isEmpty())
+            throw new IllegalArgumentException(
+                    "'" + entityType.getName() + "' has no public constructor with "
+                            + columnNames.length + " parameters"
+            );
+        for (var ctor : candidates) {
+            var types = ctor.getParameterTypes();
+            boolean matches = true;
+            for (int i = 0; i < columnNames.length && matches; i++) {
+                var name = columnNames[i];
+                var getterName = "get" + name.substring(0, 1).toUpperCase() + name.substring(1);
+                try {
+                    matches = entityType.getMethod(getterName).getReturnType() == types[i];
+                } catch (NoSuchMethodException _) {
+                    matches = false;
+                }
+            }
+            if (matches)
+                return ctor;
+        }
+        return candidates.getFirst();
+    }
+
+    /**
+     * Maps the current row with the plan for the columns of `rs`. Looking up
+     * the plan needs the result set metadata, so `QueryExecutor` calls
+     * `forResultSet` once per result set instead.
+     */
+    @Override
+    public T map(ResultSet rs) throws SQLException {
+        return planFor(rs.getMetaData()).map(rs);
+    }
+
+    /**
+     * @param rs Result set
+     * @return Row mapper for the columns of `rs`, which can be used for all
+     * result sets with the same column labels and types
+     */
+    @Override
+    public RowMapper<T> forResultSet(ResultSet rs) throws SQLException {
+        return planFor(rs.getMetaData());
+    }
+
+    private Plan<T> planFor(ResultSetMetaData metaData) throws SQLException {
+        int numColumns = metaData.getColumnCount();
+        var labels = new String[numColumns];
+        var signature = new StringBuilder();
+        for (int i = 0; i < numColumns; i++) {
+            labels[i] = metaData.getColumnLabel(i + 1);
+            signature.append(labels[i]).append(':').append(metaData.getColumnType(i + 1)).append(',');
+        }
+        var plan = plans.get(signature.toString());
+        if (plan == null) {
+            plan = createPlan(labels);
+            plans.put(signature.toString(), plan);
+        }
+        return plan;
+    }
+
+    private Plan<T> createPlan(String[] labels) throws SQLException {
+        int numParameters = parameterNames.length;
+        var columnIndices = new int[numParameters];
+        boolean allMatched = true;
+        for (int i = 0; i < numParameters; i++) {
+            var name = normalize(parameterNames[i]);
+            columnIndices[i] = -1;
+            for (int j = 0; j < labels.length; j++) {
+                if (normalize(labels[j]).equals(name)) {
+                    columnIndices[i] = j + 1;
+                    break;
+                }
+            }
+            allMatched &= columnIndices[i] > 0;
+        }
+        if (!allMatched) {
+            if (labels.length != numParameters)
+                throw new SQLException(
+                        "Cannot match columns " + Arrays.toString(labels) + " to "
+                                + Arrays.toString(parameterNames) + " of '" + entityType.getName() + "'"
+                );
+            for (int i = 0; i < numParameters; i++)
+                columnIndices[i] = i + 1;
+        }
+        // Each constructor argument is read from the result set by a reader
+        // of exactly the parameter type, so that primitive values are not
+        // boxed. All readers get the same result set argument.
+        var readers = new MethodHandle[numParameters];
+        for (int i = 0; i < numParameters; i++)
+            readers[i] = createReader(parameterTypes[i], columnIndices[i]);
+        var handle = MethodHandles.filterArguments(constructor, 0, readers);
+        handle = MethodHandles.permuteArguments(
+                handle,
+                MethodType.methodType(handle.type().returnType(), ResultSet.class),
+                new int[numParameters]
+        );
+        return new Plan<>(entityType, handle.asType(MethodType.methodType(Object.class, ResultSet.class)));
+    }
+
+    private static String normalize(String name) {
+        return name.replace("_", "").toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * @return Method handle of type `(ResultSet) -> type`, reading column
+     * `index`
+     */
+    private static MethodHandle createReader(Class<?> type, int index) {
+        var lookup = MethodHandles.lookup();
+        MethodHandle reader;
+        try {
+            if (type.isPrimitive()) {
+                // For example, `getInt` for `int`
+                var typeName = type.getName();
+                var getterName = "get" + Character.toUpperCase(typeName.charAt(0)) + typeName.substring(1);
+                reader = lookup.findVirtual(ResultSet.class, getterName, MethodType.methodType(type, int.class));
+            } else if (type == String.class) {
+                reader = lookup.findVirtual(ResultSet.class, "getString", MethodType.methodType(String.class, int.class));
+            } else if (type == BigDecimal.class) {
+                reader = lookup.findVirtual(
+                        ResultSet.class, "getBigDecimal", MethodType.methodType(BigDecimal.class, int.class)
+                );
+            } else if (type == Integer.class || type == Long.class || type == Double.class) {
+                // `getInt` etc. return 0 for NULL
+                var name = "getNullable" + type.getSimpleName();
+                reader = lookup.findStatic(
+                        EntityRowMapper.class, name, MethodType.methodType(type, ResultSet.class, int.class)
+                );
+            } else {
+                reader = MethodHandles.insertArguments(
+                        lookup.findVirtual(
+                                ResultSet.class,
+                                "getObject",
+                                MethodType.methodType(Object.class, int.class, Class.class)
+                        ),
+                        2,
+                        type
+                ).asType(MethodType.methodType(type, ResultSet.class, int.class));
+            }
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+        return MethodHandles.insertArguments(reader, 1, index);
+    }
+
+    private static Integer getNullableInteger(ResultSet rs, int index) throws SQLException {
+        int value = rs.getInt(index);
+        return rs.wasNull() ? null : value;
+    }
+
+    private static Long getNullableLong(ResultSet rs, int index) throws SQLException {
+        long value = rs.getLong(index);
+        return rs.wasNull() ? null : value;
+    }
+
+    private static Double getNullableDouble(ResultSet rs, int index) throws SQLException {
+        double value = rs.getDouble(index);
+        return rs.wasNull() ? null : value;
+    }
+
+    /**
+     * Row mapper for result sets of one shape: the constructor with
+     * readers for the matched columns bound to its parameters.
+     */
+    private static class Plan<T> implements RowMapper<T> {
+        private final Class<T> entityType;
+        // Type `(ResultSet) -> Object`
+        private final MethodHandle handle;
+
+        private Plan(Class<T> entityType, MethodHandle handle) {
+            this.entityType = entityType;
+            this.handle = handle;
+        }
+
+        @Override
+        public T map(ResultSet rs) throws SQLException {
+            try {
+                return entityType.cast((Object) handle.invokeExact(rs));
+            } catch (SQLException | RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new SQLException("Cannot create '" + entityType.getName() + "'", e);
+            }
+        }
+    }
+}
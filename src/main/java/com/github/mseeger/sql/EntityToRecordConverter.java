@@ -1,11 +1,14 @@
 package com.github.mseeger.sql;
 
 import java.lang.reflect.Field;
+import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Stream;
 
 /**
@@ -13,12 +16,32 @@ import java.util.stream.Stream;
  * from an entity object, returning the values converted to strings.
  *
  * A class is an entity if all its fields have public getters, and there are
- * no other methods of name "getXyz". The field names are determined from the
- * getter names.
+ * no other non-static methods of name "getXyz" without parameters. The field
+ * names are determined from the getter names.
+ * <p>
+ * If a `RecordConverter` has been generated for the entity class (see
+ * `TableEntity`), it is used instead of reflection, so that field values
+ * are obtained by direct getter calls.
+ * <p>
+ * Creating a converter is expensive, use `forEntityType` in order to obtain
+ * a cached one.
  */
 class EntityToRecordConverter {
+    private static final ClassValue<ConcurrentHashMap<Map<String, String>, EntityToRecordConverter>> cache =
+            new ClassValue<>() {
+                @Override
+                protected ConcurrentHashMap<Map<String, String>, EntityToRecordConverter> computeValue(Class<?> type) {
+                    return new ConcurrentHashMap<>();
+                }
+            };
+
     private final Class<?> entityType;
     private final EntityField[] fields;
+    // Used instead of `fields` if there is a generated converter
+    private final RecordConverter<Object> generated;
+    private final String[] generatedNames;
+    private final int[] generatedIndices;
+    private final EntryToStringConverter[] generatedConverters;
 
     /**
      * If `this.fields` is determined by reflection, the ordering of entries
@@ -34,25 +57,82 @@ class EntityToRecordConverter {
             Map<String, String> formats
     ) {
         this.entityType = entityType;
-        this.fields = createFields(entityType, formats);
+        @SuppressWarnings("unchecked")
+        var generated = (RecordConverter<Object>) RecordConverter.forEntityType(entityType);
+        this.generated = generated;
+        if (generated == null) {
+            this.fields = createFields(entityType, formats);
+            this.generatedNames = null;
+            this.generatedIndices = null;
+            this.generatedConverters = null;
+        } else {
+            this.fields = null;
+            String[] fieldNames = generated.getFieldNames();
+            String[] columnNames = generated.getColumnNames();
+            if (columnNames == null)
+                columnNames = fieldNames;
+            String[] getterNames = generated.getGetterNames();
+            Class<?>[] fieldTypes = generated.getFieldTypes();
+            this.generatedNames = columnNames.clone();
+            this.generatedIndices = new int[columnNames.length];
+            this.generatedConverters = new EntryToStringConverter[columnNames.length];
+            for (int i = 0; i < columnNames.length; i++) {
+                int index = Arrays.asList(fieldNames).indexOf(columnNames[i]);
+                if (index < 0)
+                    throw new NoSuchElementException("columnNames entry '" + columnNames[i] + "' is no entity field");
+                generatedIndices[i] = index;
+                generatedConverters[i] = EntityField.createConverter(
+                        fieldTypes[index], formats.get(getterNames[index])
+                );
+            }
+        }
     }
 
     public EntityToRecordConverter(Class<?> entityType) {
         this(entityType, new HashMap<String, String>());
     }
 
+    /**
+     * Returns converter for `entityType` and `formats`, which is created only
+     * once for each combination.
+     *
+     * @param entityType Entity class
+     * @param formats Maps certain field names to format strings
+     * @return Converter
+     */
+    public static EntityToRecordConverter forEntityType(
+            Class<?> entityType,
+            Map<String, String> formats
+    ) {
+        return cache.get(entityType).computeIfAbsent(
+                Map.copyOf(formats),
+                key -> new EntityToRecordConverter(entityType, key)
+        );
+    }
+
     private EntityField[] createFields(Class<?> entityType, Map<String, String> formats) {
         ArrayList<EntityField> result = new ArrayList<>();
         for (var method: entityType.getDeclaredMethods()) {
-            var methodName = method.getName();
-            if (methodName.startsWith("get")) {
-                var format = formats.get(methodName);
+            if (isGetter(method)) {
+                var format = formats.get(method.getName());
                 result.add(new EntityField(method, format));
             }
         }
         return postProcessFields(entityType, result);
     }
 
+    /**
+     * Same rule as used by `TableEntityProcessor`, so that both paths find
+     * the same fields.
+     */
+    static boolean isGetter(Method method) {
+        var methodName = method.getName();
+        return methodName.startsWith("get") && methodName.length() > 3
+                && method.getParameterCount() == 0
+                && !Modifier.isStatic(method.getModifiers())
+                && !method.isSynthetic();
+    }
+
     /**
      * Checks for static `columnNames` field in `entityType`. If given, this
      * determines the column names and their ordering.
@@ -79,7 +159,7 @@ class EntityToRecordConverter {
         return fields.toArray(new EntityField[0]);
     }
 
-    private String[] columnNamesByReflection(Class<?> entityType) {
+    static String[] columnNamesByReflection(Class<?> entityType) {
         String[] columnNames = null;
         try {
             Field field = entityType.getField("columnNames");
@@ -94,6 +174,8 @@ class EntityToRecordConverter {
     }
 
     public String[] getFieldNames() {
+        if (generated != null)
+            return generatedNames.clone();
         // See https://stackoverflow.com/questions/37192045/java-creating-an-array-from-the-properties-of-another-array
         return Stream.of(fields).map(EntityField::getName).toArray(String[]::new);
     }
@@ -107,6 +189,15 @@ class EntityToRecordConverter {
             throw new IllegalArgumentException(
                     "entity has wrong type, must be '" + entityType.getName() + "'"
             );
-        return Stream.of(fields).map(field -> field.getValueAsString(entity)).toArray(String[]::new);
+        if (generated != null) {
+            var values = new String[generatedIndices.length];
+            for (int i = 0; i < values.length; i++)
+                values[i] = generated.valueAsString(entity, generatedIndices[i], generatedConverters[i]);
+            return values;
+        }
+        var values = new String[fields.length];
+        for (int i = 0; i < fields.length; i++)
+            values[i] = fields[i].getValueAsString(entity);
+        return values;
     }
 }
\ No newline at end of file
@@ -1,5 +1,21 @@
 package com.github.mseeger.sql;
 
-interface EntryToStringConverter {
+/**
+ * Converts table entries to strings. The primitive overloads allow
+ * implementations to avoid boxing.
+ */
+public interface EntryToStringConverter {
     String convert(Object x);
+
+    default String convertInt(int x) {
+        return convert(x);
+    }
+
+    default String convertLong(long x) {
+        return convert(x);
+    }
+
+    default String convertDouble(double x) {
+        return convert(x);
+    }
 }
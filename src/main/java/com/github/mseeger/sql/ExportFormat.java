@@ -0,0 +1,29 @@
+package com.github.mseeger.sql;
+
+/**
+ * Formats written by `ResultSetExporter`.
+ */
+public enum ExportFormat {
+    /**
+     * RFC 4180 CSV in UTF-8, with a header row of column labels and CRLF
+     * line endings. NULL is written as an empty field.
+     */
+    CSV,
+    /**
+     * Compact binary format, all numbers big-endian:
+     * <pre>
+     * header: "SQLX" (4 bytes), version (1 byte), number of columns (int),
+     *         then per column: type (1 byte, ordinal of
+     *         `ColumnarResult.ColumnType`), label (string)
+     * row:    length of the rest of the row in bytes (int), null bitmap
+     *         (one bit per column, rounded up to bytes), then values of
+     *         non-NULL columns: `INT` as int, `LONG` as long, `DOUBLE` as
+     *         double, `STRING` as string
+     * end:    -1 (int)
+     * string: length in bytes (int), then UTF-8 bytes
+     * </pre>
+     * Column types are determined as for `ColumnarResult`, except that
+     * `DECIMAL` and `NUMERIC` are written as strings, so that they are exact.
+     */
+    BINARY
+}
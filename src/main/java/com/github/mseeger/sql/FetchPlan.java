@@ -0,0 +1,32 @@
+package com.github.mseeger.sql;
+
+/**
+ * How `QueryExecutor.run` fetches the result of a query. Chosen by
+ * `QueryProfiler` from the observed results of earlier executions, or fixed
+ * by overriding `SQLQuery.getFetchPlan`.
+ *
+ * @param initialCapacity Initial capacity of the result list
+ * @param fetchSize Passed to `Statement.setFetchSize`. 0 keeps the default
+ *                  of the driver, which reads the whole result into memory
+ *                  before the first row is mapped. Other values stream the
+ *                  result, see `QueryExecutor.setStreamingFetchSize`
+ */
+public record FetchPlan(int initialCapacity, int fetchSize) {
+    /**
+     * Plan used before anything is known about the result of a query.
+     */
+    public static final FetchPlan defaultPlan = new FetchPlan(10, 0);
+
+    public FetchPlan {
+        if (initialCapacity < 0)
+            throw new IllegalArgumentException("initialCapacity = " + initialCapacity + ", must not be negative");
+    }
+
+    /**
+     * @return Is the result streamed from the server, instead of being read
+     * into memory by the driver?
+     */
+    public boolean isStreaming() {
+        return fetchSize != 0;
+    }
+}
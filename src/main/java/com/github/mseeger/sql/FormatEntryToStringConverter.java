@@ -1,12 +1,25 @@
 package com.github.mseeger.sql;
 
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
 class FormatEntryToStringConverter implements EntryToStringConverter {
     public static final String defaultFormat = "%.2f";
+    private static final Pattern fixedPrecisionFormat = Pattern.compile("%\\.(\\d{1,2})f");
 
     private final String format;
+    // Number of decimals if `format` is of the form `%.<n>f`, -1 otherwise
+    private final int decimals;
+    // Symbols of the default locale, updated if the locale changes
+    private LocaleSymbols symbols;
 
     public FormatEntryToStringConverter(String format) {
         this.format = format;
+        var matcher = fixedPrecisionFormat.matcher(format);
+        this.decimals = matcher.matches() ? Integer.parseInt(matcher.group(1)) : -1;
     }
 
     public FormatEntryToStringConverter() {
@@ -17,4 +30,40 @@ class FormatEntryToStringConverter implements EntryToStringConverter {
     public String convert(Object x) {
         return String.format(format, x);
     }
+
+    /**
+     * For formats `%.<n>f`, the value is rounded without boxing it and
+     * without going through `String.format`. The result is the same, since
+     * `Formatter` also rounds the shortest decimal representation of `x`
+     * half up.
+     */
+    @Override
+    public String convertDouble(double x) {
+        if (decimals < 0 || !Double.isFinite(x))
+            return convert(x);
+        var locale = Locale.getDefault(Locale.Category.FORMAT);
+        var symbols = this.symbols;
+        if (symbols == null || !symbols.locale().equals(locale)) {
+            symbols = LocaleSymbols.of(locale);
+            this.symbols = symbols;
+        }
+        if (!symbols.asciiDigits())
+            return convert(x);
+        var rounded = BigDecimal.valueOf(x).setScale(decimals, RoundingMode.HALF_UP);
+        var result = rounded.toPlainString();
+        // `Formatter` keeps the sign of negative values rounded to zero
+        if (rounded.signum() == 0 && Math.copySign(1.0, x) < 0)
+            result = "-" + result;
+        char separator = symbols.decimalSeparator();
+        return separator == '.' ? result : result.replace('.', separator);
+    }
+
+    private record LocaleSymbols(Locale locale, char decimalSeparator, boolean asciiDigits) {
+        static LocaleSymbols of(Locale locale) {
+            var symbols = DecimalFormatSymbols.getInstance(locale);
+            return new LocaleSymbols(
+                    locale, symbols.getDecimalSeparator(), symbols.getZeroDigit() == '0'
+            );
+        }
+    }
 }
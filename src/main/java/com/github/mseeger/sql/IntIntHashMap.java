@@ -0,0 +1,132 @@
+package com.github.mseeger.sql;
+
+import java.util.Arrays;
+
+/**
+ * Hash map from `int` to `int` with open addressing and linear probing, so
+ * that neither keys nor values are boxed. Entries cannot be removed, but
+ * values can be set to 0. Not thread-safe.
+ */
+public class IntIntHashMap {
+    private static final float maxLoadFactor = 0.5f;
+
+    private int[] keys;
+    private int[] values;
+    private boolean[] used;
+    private int size = 0;
+
+    public IntIntHashMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, (int) (expectedSize / maxLoadFactor)) - 1) << 1;
+        keys = new int[capacity];
+        values = new int[capacity];
+        used = new boolean[capacity];
+    }
+
+    public IntIntHashMap() {
+        this(16);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean containsKey(int key) {
+        return used[indexOf(key)];
+    }
+
+    /**
+     * @return Value for `key`, or `defaultValue` if there is none
+     */
+    public int getOrDefault(int key, int defaultValue) {
+        int index = indexOf(key);
+        return used[index] ? values[index] : defaultValue;
+    }
+
+    /**
+     * @return Value for `key`, or 0 if there is none
+     */
+    public int get(int key) {
+        return getOrDefault(key, 0);
+    }
+
+    public void put(int key, int value) {
+        int index = indexOf(key);
+        if (!used[index]) {
+            insertAt(index, key, value);
+        } else {
+            values[index] = value;
+        }
+    }
+
+    /**
+     * Adds `delta` to the value for `key`, where a missing value counts as 0.
+     *
+     * @return New value
+     */
+    public int addTo(int key, int delta) {
+        int index = indexOf(key);
+        if (!used[index]) {
+            insertAt(index, key, delta);
+            return delta;
+        }
+        values[index] += delta;
+        return values[index];
+    }
+
+    /**
+     * @return Keys of all entries, in no particular order
+     */
+    public int[] keys() {
+        var result = new int[size];
+        int pos = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (used[i])
+                result[pos++] = keys[i];
+        }
+        return result;
+    }
+
+    public void clear() {
+        Arrays.fill(used, false);
+        size = 0;
+    }
+
+    private void insertAt(int index, int key, int value) {
+        keys[index] = key;
+        values[index] = value;
+        used[index] = true;
+        size++;
+        if (size > keys.length * maxLoadFactor)
+            resize();
+    }
+
+    private int indexOf(int key) {
+        int mask = keys.length - 1;
+        int index = mix(key) & mask;
+        while (used[index] && keys[index] != key)
+            index = (index + 1) & mask;
+        return index;
+    }
+
+    private static int mix(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private void resize() {
+        var oldKeys = keys;
+        var oldValues = values;
+        var oldUsed = used;
+        keys = new int[oldKeys.length * 2];
+        values = new int[oldKeys.length * 2];
+        used = new boolean[oldKeys.length * 2];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldUsed[i]) {
+                int index = indexOf(oldKeys[i]);
+                keys[index] = oldKeys[i];
+                values[index] = oldValues[i];
+                used[index] = true;
+            }
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package com.github.mseeger.sql;
+
+import java.nio.ByteBuffer;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.ToLongFunction;
+
+/**
+ * Pages through the result of a `QueryTemplate` in order of an integer sort
+ * key, using keyset pagination. The query itself contains the seek predicate
+ * and the limit, as parameters `afterKey` (type `LONG`) and `pageSize` (type
+ * `INT`), for example:
+ * <pre>
+ * SELECT film_id, title
+ *   FROM film
+ *  WHERE film_id > :afterKey
+ *  ORDER BY film_id
+ *  LIMIT :pageSize
+ * </pre>
+ * `afterKey` is the key of the last row of the previous page. The key must
+ * be unique among result rows. The predicate should be placed where it
+ * restricts the work done by the query, for example inside a CTE, so that
+ * a page does not compute the full result first. With an index on the key,
+ * the cost of a page does then not depend on how far into the result it is.
+ * <p>
+ * Pages are returned by `pages`, which prefetches the next page in the
+ * background while the caller consumes the current one, or by `fetchPage`.
+ * Each page comes with a cursor token, from which paging can be resumed
+ * later, for example by another request of an API client.
+ * <p>
+ * All other parameters are set on the query passed to the constructor,
+ * which is copied for every page.
+ *
+ * @param <T> Entity type
+ */
+public class KeysetPaginator<T> {
+    public static final String afterKeyParameter = "afterKey";
+    public static final String pageSizeParameter = "pageSize";
+
+    private final QueryExecutor<T> queryExecutor;
+    private final QueryTemplate.Bound query;
+    private final RowMapper<T> rowMapper;
+    private final ToLongFunction<? super T> keyExtractor;
+    private final int pageSize;
+    private final int afterKeyIndex;
+    private final int pageSizeIndex;
+
+    /**
+     * @param queryExecutor Runs page queries
+     * @param query SQL query, whose result is paged through. All parameters
+     *              other than `afterKey` and `pageSize` must be set
+     * @param rowMapper Maps result set rows to entity objects of type `T`
+     * @param keyExtractor Extracts sort key from an entity object
+     * @param pageSize Maximum number of rows per page
+     * @throws IllegalArgumentException if the template of `query` does not
+     *                                  have parameters `afterKey` and
+     *                                  `pageSize` of the right types
+     */
+    public KeysetPaginator(
+            QueryExecutor<T> queryExecutor,
+            QueryTemplate.Bound query,
+            RowMapper<T> rowMapper,
+            ToLongFunction<? super T> keyExtractor,
+            int pageSize
+    ) {
+        if (pageSize < 1)
+            throw new IllegalArgumentException("pageSize = " + pageSize + ", must be positive");
+        var template = query.getTemplate();
+        this.queryExecutor = queryExecutor;
+        this.query = query;
+        this.rowMapper = rowMapper;
+        this.keyExtractor = keyExtractor;
+        this.pageSize = pageSize;
+        this.afterKeyIndex = parameterIndex(template, afterKeyParameter, QueryTemplate.ParameterType.LONG);
+        this.pageSizeIndex = parameterIndex(template, pageSizeParameter, QueryTemplate.ParameterType.INT);
+    }
+
+    /**
+     * @param rows Rows of page, in order of the sort key
+     * @param nextCursor Cursor token for the following page, or null if this
+     *                   is the last page
+     */
+    public record Page<T>(List<T> rows, String nextCursor) {
+        public boolean hasNext() {
+            return nextCursor != null;
+        }
+    }
+
+    /**
+     * Fetches a single page.
+     *
+     * @param cursor Cursor token of the previous page, or null for the first
+     *               page
+     * @return Page
+     */
+    public Page<T> fetchPage(String cursor) throws SQLException {
+        var rows = queryExecutor.run(pageQuery(decodeCursor(cursor)), rowMapper);
+        return toPage(rows);
+    }
+
+    /**
+     * Iterates over pages, starting after `cursor`. Once a page is returned,
+     * the next one is fetched in the background by `QueryExecutor.runAsync`.
+     * There is always at least one page, which may be empty. If a page query
+     * fails, `next` throws `UncheckedSQLException`.
+     *
+     * @param cursor Cursor token of the page before the first one, or null
+     *               in order to start from the beginning
+     * @return Iterator over pages
+     */
+    public Iterator<Page<T>> pages(String cursor) {
+        long startKey = decodeCursor(cursor);
+        return new Iterator<>() {
+            private CompletableFuture<ArrayList<T>> nextRows = fetchAsync(startKey);
+            private boolean first = true;
+
+            @Override
+            public boolean hasNext() {
+                // A full page may be followed by an empty one, which is
+                // skipped
+                return nextRows != null && (first || !join(nextRows).isEmpty());
+            }
+
+            @Override
+            public Page<T> next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                var rows = join(nextRows);
+                first = false;
+                var page = toPage(rows);
+                nextRows = page.hasNext() ? fetchAsync(keyExtractor.applyAsLong(rows.getLast())) : null;
+                return page;
+            }
+        };
+    }
+
+    public Iterator<Page<T>> pages() {
+        return pages(null);
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    private CompletableFuture<ArrayList<T>> fetchAsync(long afterKey) {
+        return queryExecutor.runAsync(pageQuery(afterKey), rowMapper);
+    }
+
+    private Page<T> toPage(ArrayList<T> rows) {
+        String nextCursor = rows.size() < pageSize
+                ? null
+                : encodeCursor(keyExtractor.applyAsLong(rows.getLast()));
+        return new Page<>(rows, nextCursor);
+    }
+
+    private static <U> ArrayList<U> join(CompletableFuture<ArrayList<U>> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof SQLException cause)
+                throw new UncheckedSQLException(cause);
+            if (e.getCause() instanceof RuntimeException cause)
+                throw cause;
+            throw e;
+        }
+    }
+
+    private SQLQuery pageQuery(long afterKey) {
+        return query.copy()
+                .setLong(afterKeyIndex, afterKey)
+                .setInt(pageSizeIndex, pageSize);
+    }
+
+    private static int parameterIndex(
+            QueryTemplate template,
+            String parameterName,
+            QueryTemplate.ParameterType type
+    ) {
+        int index;
+        try {
+            index = template.indexOf(parameterName);
+        } catch (NoSuchElementException e) {
+            throw new IllegalArgumentException(
+                    "Query '" + template.getName() + "' has no parameter '" + parameterName + "'", e
+            );
+        }
+        if (template.getType(parameterName) != type)
+            throw new IllegalArgumentException(
+                    "Parameter '" + parameterName + "' of query '" + template.getName()
+                            + "' must have type " + type
+            );
+        return index;
+    }
+
+    /**
+     * Cursor tokens are the URL-safe Base64 encoding of the last key.
+     */
+    static String encodeCursor(long lastKey) {
+        var bytes = ByteBuffer.allocate(Long.BYTES).putLong(lastKey).array();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    /**
+     * @return Last key encoded in `cursor`, or `Long.MIN_VALUE` if `cursor`
+     * is null
+     * @throws IllegalArgumentException if `cursor` is not a valid token
+     */
+    static long decodeCursor(String cursor) {
+        if (cursor == null)
+            return Long.MIN_VALUE;
+        byte[] bytes;
+        try {
+            bytes = Base64.getUrlDecoder().decode(cursor);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor token '" + cursor + "'", e);
+        }
+        if (bytes.length != Long.BYTES)
+            throw new IllegalArgumentException("Invalid cursor token '" + cursor + "'");
+        return ByteBuffer.wrap(bytes).getLong();
+    }
+}
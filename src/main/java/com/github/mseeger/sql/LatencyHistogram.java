@@ -0,0 +1,84 @@
+package com.github.mseeger.sql;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of non-negative values (e.g., latencies in
+ * nanoseconds), with log-linear buckets: each power of two is split into
+ * 8 buckets, so that percentiles have a relative error of at most 12.5%.
+ * Recording a value is a few arithmetic operations and an atomic increment.
+ */
+public class LatencyHistogram {
+    private static final int subBucketBits = 3;
+    private static final int numSubBuckets = 1 << subBucketBits;
+    private static final int numBuckets = (64 - subBucketBits + 1) * numSubBuckets;
+
+    private final AtomicLongArray counts = new AtomicLongArray(numBuckets);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+
+    public void record(long value) {
+        counts.incrementAndGet(bucketIndex(Math.max(value, 0)));
+        count.increment();
+        sum.add(value);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public double getMean() {
+        long n = count.sum();
+        return n == 0 ? 0 : (double) sum.sum() / n;
+    }
+
+    /**
+     * @param percentile Between 0 and 100
+     * @return Upper bound of the bucket containing the percentile, or 0 if
+     * nothing was recorded
+     */
+    public long getPercentile(double percentile) {
+        long total = 0;
+        var snapshot = new long[numBuckets];
+        for (int i = 0; i < numBuckets; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0)
+            return 0;
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+        long seen = 0;
+        for (int i = 0; i < numBuckets; i++) {
+            seen += snapshot[i];
+            if (seen >= rank)
+                return bucketUpperBound(i);
+        }
+        return bucketUpperBound(numBuckets - 1);
+    }
+
+    public long getMax() {
+        for (int i = numBuckets - 1; i >= 0; i--) {
+            if (counts.get(i) > 0)
+                return bucketUpperBound(i);
+        }
+        return 0;
+    }
+
+    static int bucketIndex(long value) {
+        if (value < numSubBuckets)
+            return (int) value;
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int mantissa = (int) (value >>> (exponent - subBucketBits)) & (numSubBuckets - 1);
+        return (exponent - subBucketBits + 1) * numSubBuckets + mantissa;
+    }
+
+    static long bucketUpperBound(int index) {
+        if (index < numSubBuckets)
+            return index;
+        int exponent = index / numSubBuckets + subBucketBits - 1;
+        long mantissa = index % numSubBuckets;
+        long lower = (numSubBuckets + mantissa) << (exponent - subBucketBits);
+        return lower + (1L << (exponent - subBucketBits)) - 1;
+    }
+}
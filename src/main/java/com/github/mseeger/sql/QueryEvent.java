@@ -0,0 +1,52 @@
+package com.github.mseeger.sql;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR event emitted by `QueryExecutor` for every query (`run`,
+ * `runColumnar`, `stream`, `forEach`, `export`) and every `runBatch` call,
+ * while a flight
+ * recording with this event enabled is running. Otherwise, it costs
+ * next to nothing.
+ */
+@Name("com.github.mseeger.sql.Query")
+@Label("SQL Query")
+@Category({"Database", "SQL"})
+@Description("Execution of an SQLQuery or BatchSQLQuery by QueryExecutor")
+@StackTrace(false)
+class QueryEvent extends Event {
+    @Label("Query Name")
+    String queryName;
+
+    @Label("Acquire Connection")
+    @Timespan(Timespan.NANOSECONDS)
+    long acquireNanos;
+
+    @Label("Prepare Statement")
+    @Timespan(Timespan.NANOSECONDS)
+    long prepareNanos;
+
+    @Label("Execute Query")
+    @Timespan(Timespan.NANOSECONDS)
+    long executeNanos;
+
+    @Label("Fetch Rows")
+    @Timespan(Timespan.NANOSECONDS)
+    long fetchNanos;
+
+    @Label("Map Rows")
+    @Timespan(Timespan.NANOSECONDS)
+    long mapNanos;
+
+    @Label("Rows")
+    long numRows;
+
+    @Label("Error")
+    String error;
+}
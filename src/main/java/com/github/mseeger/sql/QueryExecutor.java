@@ -1,40 +1,894 @@
 package com.github.mseeger.sql;
 
-import java.sql.DriverManager;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
-public class QueryExecutor<T> {
-    private final ConnectionConfig connectionConfig;
+public class QueryExecutor<T> implements AutoCloseable {
+    /**
+     * With MySQL, this fetch size makes the driver stream rows one by one,
+     * instead of reading the whole result into memory.
+     */
+    public static final int rowByRowFetchSize = Integer.MIN_VALUE;
+    public static final int defaultBatchChunkSize = 1000;
+    public static final int defaultMaxConcurrency = 16;
+
+    private final ConnectionSource connectionSource;
+    private final boolean ownsConnectionSource;
+    // Shared with executors created by `forRowType`
+    private final Settings settings;
+    // Created by `forRowType`?
+    private final boolean isView;
+
+    /**
+     * Connections are taken from `connectionSource`, which is not closed by
+     * `close`. Use this in order to share a pool between several executors.
+     *
+     * @param connectionSource Source of connections
+     */
+    public QueryExecutor(ConnectionSource connectionSource) {
+        this.connectionSource = connectionSource;
+        this.ownsConnectionSource = false;
+        this.settings = new Settings();
+        this.isView = false;
+    }
+
+    /**
+     * @param connectionConfig Connection configuration
+     * @param pooled If true, connections are taken from a `ConnectionPool`
+     *               with default settings. If `connectionConfig` has read
+     *               replicas, there is a pool per host, and read-only queries
+     *               are routed by a `ReplicaRoutingConnectionSource`.
+     *               Otherwise, a new connection to the primary is created via
+     *               `DriverManager` for every query
+     */
+    public QueryExecutor(ConnectionConfig connectionConfig, boolean pooled) {
+        if (!pooled) {
+            this.connectionSource = new DriverManagerConnectionSource(connectionConfig);
+        } else if (connectionConfig.getReplicas().isEmpty()) {
+            this.connectionSource = new ConnectionPool(connectionConfig);
+        } else {
+            this.connectionSource = new ReplicaRoutingConnectionSource(connectionConfig);
+        }
+        this.ownsConnectionSource = true;
+        this.settings = new Settings();
+        this.isView = false;
+    }
 
     public QueryExecutor(ConnectionConfig connectionConfig) {
-        this.connectionConfig = connectionConfig;
+        this(connectionConfig, true);
+    }
+
+    private QueryExecutor(QueryExecutor<?> parent) {
+        this.connectionSource = parent.connectionSource;
+        this.ownsConnectionSource = false;
+        this.settings = parent.settings;
+        this.isView = true;
+    }
+
+    /**
+     * Returns an executor for rows of type `U`, which is a view of this
+     * executor. It shares the connection source, all settings, the
+     * concurrency limit of `runAsync` and the threads running async
+     * queries. Settings changed on one executor apply to both. Closing the
+     * view has no effect, it does not need to be closed.
+     *
+     * @param rowType Type of entity objects
+     * @return View of this executor
+     */
+    public <U> QueryExecutor<U> forRowType(Class<U> rowType) {
+        return new QueryExecutor<>(this);
     }
 
     /**
      * Executes SQL query and returns result set as list of `T`.
      * <p>
-     * We create a new connection for each call here. This is inefficient, since
-     * `DriverManager` does not provide connection pooling.
+     * The connection is taken from the connection source and closed at the
+     * end, which returns it to the pool unless the executor was created
+     * with `pooled == false`.
+     *
+     * If a listener or slow query log is set, or a flight recording with
+     * `QueryEvent` is running, the time spent in each `QueryPhase` is
+     * measured.
+     *
+     * The capacity of the result list and the fetch size are chosen by the
+     * `FetchPlan` of the query, see `setProfiler`.
      *
      * @param query SQL query
      * @param rowMapper Maps result set rows to entity objects of type `T`
      * @return Result list of entity objects
      */
     public ArrayList<T> run(SQLQuery query, RowMapper<T> rowMapper) throws SQLException {
+        var instrumentation = new Instrumentation(query, effectiveListener());
+        var profiler = settings.profiler;
+        var profile = profiler == null ? null : profiler.profileFor(query);
+        var plan = fetchPlan(query, profiler, profile);
+        if (instrumentation.isEnabled())
+            return runInstrumented(query, rowMapper, instrumentation, plan, profile);
         ArrayList<T> resultList;
+        long rowBytes = 0;
         try (
-                var connection = DriverManager.getConnection(
-                        connectionConfig.getURL(), connectionConfig.getProperties()
-                );
-                var statement = query.getStatement(connection);
+                var connection = connectionSource.getConnection(query.isReadOnly());
+                var statement = getStatement(query, connection, plan);
                 var resultSet = statement.executeQuery()
         ) {
-            resultList = new ArrayList<>();
-            while (resultSet.next()) {
-                resultList.add(rowMapper.map(resultSet));
+            resultList = new ArrayList<>(plan.initialCapacity());
+            if (resultSet.next()) {
+                if (profile != null)
+                    rowBytes = QueryProfiler.estimateRowBytes(resultSet);
+                var mapper = rowMapper.forResultSet(resultSet);
+                do {
+                    resultList.add(mapper.map(resultSet));
+                } while (resultSet.next());
             }
         }
+        if (profile != null)
+            profile.record(resultList.size(), rowBytes);
         return resultList;
     }
+
+    /**
+     * @return Listener notified about queries: the listener, the slow query
+     * log, both, or null
+     */
+    private QueryListener effectiveListener() {
+        var listener = settings.listener;
+        var slowQueryLog = settings.slowQueryLog;
+        if (slowQueryLog != null)
+            listener = listener == null ? slowQueryLog : QueryListener.composite(listener, slowQueryLog);
+        return listener;
+    }
+
+    private FetchPlan fetchPlan(SQLQuery query, QueryProfiler profiler, QueryProfiler.Profile profile) {
+        var plan = query.getFetchPlan();
+        if (plan != null)
+            return plan;
+        return profiler == null ? FetchPlan.defaultPlan : profiler.planFor(profile, settings.streamingFetchSize);
+    }
+
+    private static PreparedStatement getStatement(
+            SQLQuery query,
+            Connection connection,
+            FetchPlan plan
+    ) throws SQLException {
+        var statement = query.getStatement(connection);
+        if (plan.fetchSize() != 0) {
+            try {
+                statement.setFetchSize(plan.fetchSize());
+            } catch (SQLException | RuntimeException e) {
+                SQLQuery.closeAfterFailure(statement, e);
+                throw e;
+            }
+        }
+        return statement;
+    }
+
+    /**
+     * Executes SQL query and stores the result column by column, without
+     * creating an object per row. See `ColumnarResult`. Use this for large
+     * results of mostly numerical columns. Instrumented like `run`, where
+     * filling the columns counts as `QueryPhase.FETCH`.
+     *
+     * @param query SQL query
+     * @return Columnar result
+     */
+    public ColumnarResult runColumnar(SQLQuery query) throws SQLException {
+        var instrumentation = new Instrumentation(query, effectiveListener());
+        ColumnarResult result;
+        try (var connection = connectionSource.getConnection(query.isReadOnly())) {
+            instrumentation.startPhase(QueryPhase.PREPARE);
+            try (var statement = query.getStatement(connection)) {
+                instrumentation.startPhase(QueryPhase.EXECUTE);
+                try (var resultSet = statement.executeQuery()) {
+                    instrumentation.startPhase(QueryPhase.FETCH);
+                    result = ColumnarResult.from(resultSet);
+                }
+            }
+            instrumentation.endPhase();
+        } catch (SQLException | RuntimeException e) {
+            instrumentation.failed(e);
+            throw e;
+        }
+        instrumentation.addRows(result.getNumRows());
+        instrumentation.succeeded();
+        return result;
+    }
+
+    private ArrayList<T> runInstrumented(
+            SQLQuery query,
+            RowMapper<T> rowMapper,
+            Instrumentation instrumentation,
+            FetchPlan plan,
+            QueryProfiler.Profile profile
+    ) throws SQLException {
+        ArrayList<T> resultList = new ArrayList<>(plan.initialCapacity());
+        long rowBytes = 0;
+        try (var connection = connectionSource.getConnection(query.isReadOnly())) {
+            instrumentation.startPhase(QueryPhase.PREPARE);
+            try (var statement = getStatement(query, connection, plan)) {
+                instrumentation.startPhase(QueryPhase.EXECUTE);
+                try (var resultSet = statement.executeQuery()) {
+                    instrumentation.startPhase(QueryPhase.FETCH);
+                    long mapNanos = 0;
+                    RowMapper<T> mapper = null;
+                    while (resultSet.next()) {
+                        if (profile != null && resultList.isEmpty())
+                            rowBytes = QueryProfiler.estimateRowBytes(resultSet);
+                        long mapStart = System.nanoTime();
+                        if (mapper == null)
+                            mapper = rowMapper.forResultSet(resultSet);
+                        resultList.add(mapper.map(resultSet));
+                        mapNanos += System.nanoTime() - mapStart;
+                        instrumentation.addRows(1);
+                    }
+                    // Mapping happens within the fetch phase
+                    instrumentation.addNanos(QueryPhase.MAP, mapNanos);
+                    instrumentation.addNanos(QueryPhase.FETCH, -mapNanos);
+                }
+            }
+            // Closing result set and statement counts as fetch
+            instrumentation.endPhase();
+        } catch (SQLException | RuntimeException e) {
+            instrumentation.failed(e);
+            throw e;
+        }
+        if (profile != null)
+            profile.record(resultList.size(), rowBytes);
+        instrumentation.succeeded();
+        return resultList;
+    }
+
+    /**
+     * Executes SQL query on a virtual thread. The calling thread is not
+     * blocked while the database works.
+     * <p>
+     * At most `getMaxConcurrency` queries started by this method, on this
+     * executor or its views (see `forRowType`), run at the same time. Further queries wait on their virtual threads, which does
+     * not tie up platform threads.
+     *
+     * @param query SQL query
+     * @param rowMapper Maps result set rows to entity objects of type `T`
+     * @return Future for the result list. Completes exceptionally with
+     * `SQLException` if the query fails
+     */
+    public CompletableFuture<ArrayList<T>> runAsync(SQLQuery query, RowMapper<T> rowMapper) {
+        var future = new CompletableFuture<ArrayList<T>>();
+        var concurrencyLimit = settings.concurrencyLimit;
+        settings.getAsyncExecutor().execute(() -> {
+            try {
+                concurrencyLimit.acquire();
+                try {
+                    future.complete(run(query, rowMapper));
+                } finally {
+                    concurrencyLimit.release();
+                }
+            } catch (InterruptedException e) {
+                future.completeExceptionally(new SQLException("Interrupted while waiting to run query", e));
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Runs independent SQL queries concurrently, see `runAsync`.
+     *
+     * @param queries SQL queries
+     * @param rowMapper Maps result set rows to entity objects of type `T`
+     * @return Future for the result lists, in the order of `queries`.
+     * Completes exceptionally if any of the queries fails
+     */
+    public CompletableFuture<List<ArrayList<T>>> runAllAsync(
+            List<? extends SQLQuery> queries,
+            RowMapper<T> rowMapper
+    ) {
+        var futures = queries.stream()
+                .map(query -> runAsync(query, rowMapper))
+                .toList();
+        return CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new))
+                .thenApply(_ -> futures.stream().map(CompletableFuture::join).toList());
+    }
+
+    /**
+     * Runs independent SQL queries concurrently and waits for all of them,
+     * like `ExecutorService.invokeAll`.
+     *
+     * @param queries SQL queries
+     * @param rowMapper Maps result set rows to entity objects of type `T`
+     * @return Result lists, in the order of `queries`
+     */
+    public List<ArrayList<T>> runAll(
+            List<? extends SQLQuery> queries,
+            RowMapper<T> rowMapper
+    ) throws SQLException {
+        try {
+            return runAllAsync(queries, rowMapper).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof SQLException cause)
+                throw cause;
+            if (e.getCause() instanceof RuntimeException cause)
+                throw cause;
+            throw e;
+        }
+    }
+
+    /**
+     * Executes SQL query and returns a stream over the result set, mapped to
+     * `T`. Rows are fetched from the database while the stream is consumed,
+     * so that memory use does not depend on the number of rows.
+     * <p>
+     * The stream holds a connection, which is released when the stream is
+     * closed or fully consumed. Use it in a try-with-resources statement.
+     * An `SQLException` while consuming the stream is thrown as
+     * `UncheckedSQLException`.
+     *
+     * @param query SQL query
+     * @param rowMapper Maps result set rows to entity objects of type `T`
+     * @return Stream of entity objects, must be closed
+     */
+    public Stream<T> stream(SQLQuery query, RowMapper<T> rowMapper) throws SQLException {
+        var instrumentation = new Instrumentation(query, effectiveListener());
+        var resources = new StreamResources<T>(instrumentation);
+        try {
+            resources.connection = connectionSource.getConnection(query.isReadOnly());
+            instrumentation.startPhase(QueryPhase.PREPARE);
+            resources.statement = query.getStatement(resources.connection);
+            resources.statement.setFetchSize(settings.streamingFetchSize);
+            instrumentation.startPhase(QueryPhase.EXECUTE);
+            resources.resultSet = resources.statement.executeQuery();
+            resources.rowMapper = rowMapper.forResultSet(resources.resultSet);
+            // Time between rows is spent by the consumer
+            instrumentation.endPhase();
+        } catch (SQLException | RuntimeException e) {
+            instrumentation.failed(e);
+            resources.closeSuppressed(e);
+            throw e;
+        }
+        var spliterator = new Spliterators.AbstractSpliterator<T>(
+                Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL
+        ) {
+            @Override
+            public boolean tryAdvance(Consumer<? super T> action) {
+                T row;
+                try {
+                    instrumentation.startPhase(QueryPhase.FETCH);
+                    if (resources.resultSet == null || !resources.resultSet.next()) {
+                        resources.close();
+                        return false;
+                    }
+                    instrumentation.startPhase(QueryPhase.MAP);
+                    row = resources.rowMapper.map(resources.resultSet);
+                    instrumentation.endPhase();
+                    instrumentation.addRows(1);
+                } catch (SQLException e) {
+                    instrumentation.failed(e);
+                    throw new UncheckedSQLException(e);
+                } catch (RuntimeException e) {
+                    instrumentation.failed(e);
+                    throw e;
+                }
+                action.accept(row);
+                return true;
+            }
+        };
+        return StreamSupport.stream(spliterator, false).onClose(() -> {
+            try {
+                resources.close();
+            } catch (SQLException e) {
+                throw new UncheckedSQLException(e);
+            }
+        });
+    }
+
+    /**
+     * Executes SQL query and passes entity objects for all rows of the result
+     * set to `action`, without collecting them in memory. See `stream`.
+     *
+     * @param query SQL query
+     * @param rowMapper Maps result set rows to entity objects of type `T`
+     * @param action Called for every entity object, in order
+     */
+    public void forEach(
+            SQLQuery query,
+            RowMapper<T> rowMapper,
+            Consumer<? super T> action
+    ) throws SQLException {
+        try (var stream = stream(query, rowMapper)) {
+            stream.forEach(action);
+        } catch (UncheckedSQLException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Executes SQL query and writes the rows of its result set directly to
+     * `channel`, without creating entity objects. Rows are streamed with
+     * the streaming fetch size, and the result set is read no faster than
+     * `channel` accepts bytes. See `ResultSetExporter`.
+     *
+     * @param query SQL query
+     * @param channel Bytes are written here. Not closed here
+     * @param format Export format
+     * @return Number of rows written
+     */
+    public long export(
+            SQLQuery query,
+            WritableByteChannel channel,
+            ExportFormat format
+    ) throws SQLException, IOException {
+        var instrumentation = new Instrumentation(query, effectiveListener());
+        long numRows;
+        try (var connection = connectionSource.getConnection(query.isReadOnly())) {
+            instrumentation.startPhase(QueryPhase.PREPARE);
+            try (var statement = query.getStatement(connection)) {
+                statement.setFetchSize(settings.streamingFetchSize);
+                instrumentation.startPhase(QueryPhase.EXECUTE);
+                try (var resultSet = statement.executeQuery()) {
+                    instrumentation.startPhase(QueryPhase.FETCH);
+                    numRows = ResultSetExporter.export(resultSet, channel, format);
+                }
+            }
+            instrumentation.endPhase();
+        } catch (SQLException | IOException | RuntimeException e) {
+            instrumentation.failed(e);
+            throw e;
+        }
+        instrumentation.addRows(numRows);
+        instrumentation.succeeded();
+        return numRows;
+    }
+
+    /**
+     * See `export(SQLQuery, WritableByteChannel, ExportFormat)`. Use a
+     * channel if possible, since bytes are copied once more for a stream.
+     *
+     * @param query SQL query
+     * @param out Bytes are written here. Not closed here, but flushed
+     * @param format Export format
+     * @return Number of rows written
+     */
+    public long export(
+            SQLQuery query,
+            OutputStream out,
+            ExportFormat format
+    ) throws SQLException, IOException {
+        long numRows = export(query, Channels.newChannel(out), format);
+        out.flush();
+        return numRows;
+    }
+
+    /**
+     * Executes a write statement once for every entity, in batches of
+     * `chunkSize` entities. All chunks are written in a single transaction,
+     * which is rolled back if any of them fails.
+     * <p>
+     * For large INSERT batches, switch on
+     * `ConnectionConfig.withRewriteBatchedStatements`, so that each chunk is
+     * sent as a single multi-row INSERT.
+     *
+     * @param query Write statement
+     * @param entities Parameter values are taken from each of these
+     * @param chunkSize Number of entities per `executeBatch` call
+     * @param returnGeneratedKeys Collect keys generated by the database?
+     * @return Update counts per chunk, and generated keys if requested
+     */
+    public <E> BatchResult runBatch(
+            BatchSQLQuery<E> query,
+            Iterable<? extends E> entities,
+            int chunkSize,
+            boolean returnGeneratedKeys
+    ) throws SQLException {
+        if (chunkSize < 1)
+            throw new IllegalArgumentException("chunkSize = " + chunkSize + ", must be positive");
+        var chunkUpdateCounts = new ArrayList<int[]>();
+        var generatedKeys = LongStream.builder();
+        // Write statements are no `SQLQuery`, so they are only recorded as
+        // `QueryEvent`
+        var instrumentation = new Instrumentation(query.getName(), null, null);
+        try (var connection = connectionSource.getConnection()) {
+            instrumentation.startPhase(QueryPhase.PREPARE);
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try (var statement = connection.prepareStatement(
+                    query.getQueryString(),
+                    returnGeneratedKeys ? Statement.RETURN_GENERATED_KEYS : Statement.NO_GENERATED_KEYS
+            )) {
+                instrumentation.startPhase(QueryPhase.EXECUTE);
+                int numInChunk = 0;
+                for (E entity : entities) {
+                    query.imputeParameters(statement, entity);
+                    statement.addBatch();
+                    instrumentation.addRows(1);
+                    if (++numInChunk == chunkSize) {
+                        flushChunk(statement, chunkUpdateCounts, generatedKeys, returnGeneratedKeys);
+                        numInChunk = 0;
+                    }
+                }
+                if (numInChunk > 0)
+                    flushChunk(statement, chunkUpdateCounts, generatedKeys, returnGeneratedKeys);
+                connection.commit();
+            } catch (SQLException | RuntimeException e) {
+                try {
+                    connection.rollback();
+                } catch (SQLException ex) {
+                    e.addSuppressed(ex);
+                }
+                try {
+                    connection.setAutoCommit(autoCommit);
+                } catch (SQLException ex) {
+                    // Must not replace the failure of the batch
+                    e.addSuppressed(ex);
+                }
+                throw e;
+            }
+            connection.setAutoCommit(autoCommit);
+            instrumentation.endPhase();
+        } catch (SQLException | RuntimeException e) {
+            instrumentation.failed(e);
+            throw e;
+        }
+        instrumentation.succeeded();
+        return new BatchResult(
+                chunkUpdateCounts,
+                generatedKeys.build().toArray()
+        );
+    }
+
+    public <E> BatchResult runBatch(
+            BatchSQLQuery<E> query,
+            Iterable<? extends E> entities
+    ) throws SQLException {
+        return runBatch(query, entities, defaultBatchChunkSize, false);
+    }
+
+    private static void flushChunk(
+            PreparedStatement statement,
+            ArrayList<int[]> chunkUpdateCounts,
+            LongStream.Builder generatedKeys,
+            boolean returnGeneratedKeys
+    ) throws SQLException {
+        chunkUpdateCounts.add(statement.executeBatch());
+        if (returnGeneratedKeys) {
+            try (var keys = statement.getGeneratedKeys()) {
+                while (keys.next())
+                    generatedKeys.add(keys.getLong(1));
+            }
+        }
+        statement.clearBatch();
+    }
+
+    /**
+     * Sets the fetch size used by `stream` and `forEach`. The default
+     * `rowByRowFetchSize` streams rows one by one. A positive value fetches
+     * rows in batches of this size, but only if cursor fetching is switched
+     * on (see `ConnectionConfig.withCursorFetch`).
+     *
+     * @param streamingFetchSize Fetch size
+     */
+    public void setStreamingFetchSize(int streamingFetchSize) {
+        settings.streamingFetchSize = streamingFetchSize;
+    }
+
+    public int getStreamingFetchSize() {
+        return settings.streamingFetchSize;
+    }
+
+    /**
+     * Sets the profiler which learns a `FetchPlan` for each query string run
+     * by `run`. By default, every executor has its own profiler, which is
+     * shared with its views created by `forRowType`.
+     *
+     * @param profiler Profiler, or null to always use
+     *                 `FetchPlan.defaultPlan` (unless overridden by the query)
+     */
+    public void setProfiler(QueryProfiler profiler) {
+        settings.profiler = profiler;
+    }
+
+    public QueryProfiler getProfiler() {
+        return settings.profiler;
+    }
+
+    /**
+     * Sets a listener which receives measurements of every query run by
+     * `run`, `runColumnar`, `stream`, `forEach` or `export`, for example
+     * `QueryStatistics`. Use `QueryListener.composite` for several
+     * listeners.
+     *
+     * @param listener Listener, or null to switch instrumentation off
+     */
+    public void setListener(QueryListener listener) {
+        settings.listener = listener;
+    }
+
+    public QueryListener getListener() {
+        return settings.listener;
+    }
+
+    /**
+     * Sets a log which records queries (see `setListener`) taking longer
+     * than its threshold, together with their plans. It is notified in
+     * addition to the listener. The log is not closed by `close`.
+     *
+     * @param slowQueryLog Slow query log, or null to switch it off
+     */
+    public void setSlowQueryLog(SlowQueryLog slowQueryLog) {
+        settings.slowQueryLog = slowQueryLog;
+    }
+
+    public SlowQueryLog getSlowQueryLog() {
+        return settings.slowQueryLog;
+    }
+
+    /**
+     * Sets the maximum number of queries started by `runAsync` which run at
+     * the same time. It can be changed while queries run. If it is lowered,
+     * running queries complete, and waiting ones start only once fewer than
+     * the new limit are running.
+     *
+     * @param maxConcurrency Maximum number of concurrent queries
+     */
+    public void setMaxConcurrency(int maxConcurrency) {
+        if (maxConcurrency < 1)
+            throw new IllegalArgumentException("maxConcurrency = " + maxConcurrency + ", must be positive");
+        settings.concurrencyLimit.resize(maxConcurrency);
+    }
+
+    public int getMaxConcurrency() {
+        return settings.concurrencyLimit.getMaxPermits();
+    }
+
+    /**
+     * Stops accepting queries via `runAsync`, waits until queries started
+     * before are completed, and then closes the connection source if it was
+     * created by this executor. This applies to views created by
+     * `forRowType` as well. Closing a view has no effect.
+     */
+    @Override
+    public void close() throws SQLException {
+        if (isView)
+            return;
+        settings.closeAsyncExecutor();
+        if (ownsConnectionSource)
+            connectionSource.close();
+    }
+
+    /**
+     * Settings and async execution state of an executor, shared with its
+     * views.
+     */
+    private static class Settings {
+        private volatile int streamingFetchSize = rowByRowFetchSize;
+        private volatile QueryListener listener = null;
+        private volatile SlowQueryLog slowQueryLog = null;
+        private volatile QueryProfiler profiler = new QueryProfiler();
+        private final ConcurrencyLimit concurrencyLimit = new ConcurrencyLimit(defaultMaxConcurrency);
+        private ExecutorService asyncExecutor = null;
+
+        private synchronized ExecutorService getAsyncExecutor() {
+            if (asyncExecutor == null)
+                asyncExecutor = Executors.newVirtualThreadPerTaskExecutor();
+            return asyncExecutor;
+        }
+
+        private void closeAsyncExecutor() {
+            ExecutorService executor;
+            synchronized (this) {
+                executor = asyncExecutor;
+            }
+            // Waits for all tasks to complete
+            if (executor != null)
+                executor.close();
+        }
+    }
+
+    /**
+     * Semaphore whose number of permits can be changed while permits are
+     * held. Lowering it makes the number of available permits negative
+     * until enough permits are released.
+     */
+    private static class ConcurrencyLimit extends Semaphore {
+        private int maxPermits;
+
+        private ConcurrencyLimit(int maxPermits) {
+            super(maxPermits, true);
+            this.maxPermits = maxPermits;
+        }
+
+        private synchronized void resize(int newMaxPermits) {
+            int delta = newMaxPermits - maxPermits;
+            if (delta > 0) {
+                release(delta);
+            } else if (delta < 0) {
+                reducePermits(-delta);
+            }
+            maxPermits = newMaxPermits;
+        }
+
+        private synchronized int getMaxPermits() {
+            return maxPermits;
+        }
+    }
+
+    /**
+     * Measures the phases of one execution, and reports them to the
+     * listener and as `QueryEvent`. The first phase is `QueryPhase.ACQUIRE`,
+     * which starts on creation. If there is no listener and `QueryEvent` is
+     * not recorded, all methods return immediately.
+     */
+    private static class Instrumentation {
+        private final String name;
+        private final SQLQuery query;
+        private final QueryListener listener;
+        private final QueryEvent event = new QueryEvent();
+        private final boolean enabled;
+        // Null if not enabled
+        private final long[] phaseNanos;
+        private QueryPhase phase = QueryPhase.ACQUIRE;
+        private boolean inPhase = true;
+        private long phaseStart;
+        private long numRows = 0;
+        private boolean reported = false;
+
+        /**
+         * @param name Name of query, for `QueryEvent`
+         * @param query Query passed to `listener`
+         * @param listener Listener, or null
+         */
+        private Instrumentation(String name, SQLQuery query, QueryListener listener) {
+            this.name = name;
+            this.query = query;
+            this.listener = listener;
+            this.enabled = listener != null || event.isEnabled();
+            this.phaseNanos = enabled ? new long[QueryPhase.values().length] : null;
+            if (enabled) {
+                event.begin();
+                phaseStart = System.nanoTime();
+            }
+        }
+
+        private Instrumentation(SQLQuery query, QueryListener listener) {
+            this(query.getName(), query, listener);
+        }
+
+        private boolean isEnabled() {
+            return enabled;
+        }
+
+        /**
+         * Ends the current phase, if any, and starts `next`.
+         */
+        private void startPhase(QueryPhase next) {
+            if (!enabled)
+                return;
+            long now = System.nanoTime();
+            if (inPhase)
+                phaseNanos[phase.ordinal()] += now - phaseStart;
+            phase = next;
+            phaseStart = now;
+            inPhase = true;
+        }
+
+        /**
+         * Ends the current phase. Time until the next `startPhase` is not
+         * measured, but errors are still attributed to the phase.
+         */
+        private void endPhase() {
+            if (!enabled || !inPhase)
+                return;
+            phaseNanos[phase.ordinal()] += System.nanoTime() - phaseStart;
+            inPhase = false;
+        }
+
+        private void addNanos(QueryPhase phase, long nanos) {
+            if (enabled)
+                phaseNanos[phase.ordinal()] += nanos;
+        }
+
+        private void addRows(long numRows) {
+            this.numRows += numRows;
+        }
+
+        private void succeeded() {
+            if (!enabled || reported)
+                return;
+            endPhase();
+            reported = true;
+            if (listener != null)
+                listener.onSuccess(new QueryMetrics(query, phaseNanos, numRows));
+            commitEvent(null);
+        }
+
+        private void failed(Exception error) {
+            if (!enabled || reported)
+                return;
+            endPhase();
+            reported = true;
+            if (listener != null)
+                listener.onError(new QueryMetrics(query, phaseNanos, numRows), phase, error);
+            commitEvent(error);
+        }
+
+        private void commitEvent(Exception error) {
+            event.end();
+            if (event.shouldCommit()) {
+                event.queryName = name;
+                event.acquireNanos = phaseNanos[QueryPhase.ACQUIRE.ordinal()];
+                event.prepareNanos = phaseNanos[QueryPhase.PREPARE.ordinal()];
+                event.executeNanos = phaseNanos[QueryPhase.EXECUTE.ordinal()];
+                event.fetchNanos = phaseNanos[QueryPhase.FETCH.ordinal()];
+                event.mapNanos = phaseNanos[QueryPhase.MAP.ordinal()];
+                event.numRows = numRows;
+                event.error = error == null ? null : error.toString();
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * Connection, statement and result set held by a stream. Closing them
+     * more than once has no effect.
+     */
+    private static class StreamResources<T> implements AutoCloseable {
+        private final Instrumentation instrumentation;
+        private Connection connection;
+        private PreparedStatement statement;
+        private ResultSet resultSet;
+        private RowMapper<T> rowMapper;
+
+        private StreamResources(Instrumentation instrumentation) {
+            this.instrumentation = instrumentation;
+        }
+
+        /**
+         * Also reports the query as completed, unless it has failed. Rows
+         * not consumed before the stream is closed are not counted.
+         */
+        @Override
+        public void close() throws SQLException {
+            instrumentation.startPhase(QueryPhase.FETCH);
+            try (
+                    var _ = connection;
+                    var _ = statement;
+                    var _ = resultSet
+            ) {
+                connection = null;
+                statement = null;
+                resultSet = null;
+                rowMapper = null;
+            } catch (SQLException | RuntimeException e) {
+                instrumentation.failed(e);
+                throw e;
+            }
+            instrumentation.succeeded();
+        }
+
+        private void closeSuppressed(Exception cause) {
+            try {
+                close();
+            } catch (SQLException | RuntimeException e) {
+                cause.addSuppressed(e);
+            }
+        }
+    }
 }
@@ -0,0 +1,118 @@
+package com.github.mseeger.sql;
+
+import java.lang.reflect.Proxy;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.UnaryOperator;
+
+/**
+ * Identifies an execution of an `SQLQuery` by its query string and the
+ * parameter values bound by `imputeParameters`. Two keys are equal if both
+ * are equal, so that keys can be used for caching results.
+ * <p>
+ * Parameter values are recorded by running `imputeParameters` on a
+ * statement which does not access the database.
+ */
+public final class QueryKey {
+    private final String queryString;
+    private final List<Object> parameters;
+    private final int hashCode;
+
+    private QueryKey(String queryString, List<Object> parameters) {
+        this.queryString = queryString;
+        this.parameters = parameters;
+        this.hashCode = Objects.hash(queryString, parameters);
+    }
+
+    /**
+     * @param query SQL query
+     * @param normalizer Applied to each parameter value before it is stored
+     *                   in the key. For example, time stamps can be rounded
+     *                   in order to increase cache hits
+     * @return Key for `query`
+     */
+    public static QueryKey of(SQLQuery query, UnaryOperator<Object> normalizer) throws SQLException {
+        var parameters = recordParameters(query);
+        parameters.replaceAll(normalizer);
+        return new QueryKey(query.getQueryString(), Collections.unmodifiableList(parameters));
+    }
+
+    public static QueryKey of(SQLQuery query) throws SQLException {
+        return of(query, UnaryOperator.identity());
+    }
+
+    /**
+     * Runs `query.imputeParameters` on a recording statement. Entry `i - 1`
+     * of the result is the value set for slot `i`, or null if the slot is
+     * not set or set to NULL.
+     */
+    static ArrayList<Object> recordParameters(SQLQuery query) throws SQLException {
+        var parameters = new ArrayList<>();
+        var recorder = (PreparedStatement) Proxy.newProxyInstance(
+                PreparedStatement.class.getClassLoader(),
+                new Class<?>[]{PreparedStatement.class},
+                (proxy, method, args) -> {
+                    var name = method.getName();
+                    if (name.startsWith("set") && args != null && args.length >= 2
+                            && args[0] instanceof Integer index) {
+                        while (parameters.size() < index)
+                            parameters.add(null);
+                        parameters.set(index - 1, name.equals("setNull") ? null : args[1]);
+                        return null;
+                    }
+                    return switch (name) {
+                        case "equals" -> proxy == args[0];
+                        case "hashCode" -> System.identityHashCode(proxy);
+                        case "toString" -> "ParameterRecorder";
+                        default -> throw new SQLException(
+                                "Method '" + name + "' not supported while recording parameters"
+                        );
+                    };
+                }
+        );
+        query.imputeParameters(recorder);
+        return parameters;
+    }
+
+    public String getQueryString() {
+        return queryString;
+    }
+
+    /**
+     * @return Parameter values, entry `i - 1` for slot `i`
+     */
+    public List<Object> getParameters() {
+        return parameters;
+    }
+
+    /**
+     * @param index Slot index, starting from 1
+     * @return Parameter value for this slot, or null
+     */
+    public Object getParameter(int index) {
+        return index <= parameters.size() ? parameters.get(index - 1) : null;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof QueryKey other)) return false;
+        return hashCode == other.hashCode
+                && queryString.equals(other.queryString)
+                && parameters.equals(other.parameters);
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+
+    @Override
+    public String toString() {
+        return "QueryKey{parameters=" + parameters + "}";
+    }
+}
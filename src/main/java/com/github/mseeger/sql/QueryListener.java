@@ -0,0 +1,66 @@
+package com.github.mseeger.sql;
+
+/**
+ * Receives measurements of queries run by `QueryExecutor` (`run`,
+ * `runColumnar`, `stream`, `forEach`, `export`), see
+ * `QueryExecutor.setListener`. Batches written by `runBatch` are not
+ * reported here, since they are no `SQLQuery`, but they are recorded as
+ * `QueryEvent`. Methods are called on the thread running
+ * the query, so they must be fast and thread-safe.
+ */
+public interface QueryListener {
+    /**
+     * Called after a query has completed successfully.
+     *
+     * @param metrics Measurements
+     */
+    void onSuccess(QueryMetrics metrics);
+
+    /**
+     * Called when a query fails.
+     *
+     * @param query SQL query
+     * @param phase Phase in which the error happened
+     * @param error Error
+     */
+    default void onError(SQLQuery query, QueryPhase phase, Exception error) {}
+
+    /**
+     * Called when a query fails, with the measurements until the error.
+     * Calls `onError(SQLQuery, QueryPhase, Exception)` by default.
+     *
+     * @param metrics Measurements until the error
+     * @param phase Phase in which the error happened
+     * @param error Error
+     */
+    default void onError(QueryMetrics metrics, QueryPhase phase, Exception error) {
+        onError(metrics.query(), phase, error);
+    }
+
+    /**
+     * @param listeners Listeners
+     * @return Listener which forwards calls to all `listeners`, in order
+     */
+    static QueryListener composite(QueryListener... listeners) {
+        var copy = listeners.clone();
+        return new QueryListener() {
+            @Override
+            public void onSuccess(QueryMetrics metrics) {
+                for (var listener : copy)
+                    listener.onSuccess(metrics);
+            }
+
+            @Override
+            public void onError(SQLQuery query, QueryPhase phase, Exception error) {
+                for (var listener : copy)
+                    listener.onError(query, phase, error);
+            }
+
+            @Override
+            public void onError(QueryMetrics metrics, QueryPhase phase, Exception error) {
+                for (var listener : copy)
+                    listener.onError(metrics, phase, error);
+            }
+        };
+    }
+}
@@ -0,0 +1,11 @@
+package com.github.mseeger.sql;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+
+/**
+ * Loads the result of a query, typically by calling `QueryExecutor.run`.
+ */
+public interface QueryLoader<T> {
+    ArrayList<T> load() throws SQLException;
+}
@@ -0,0 +1,24 @@
+package com.github.mseeger.sql;
+
+/**
+ * Measurements for one query execution by `QueryExecutor`. For a failed
+ * query, they cover the time until the error.
+ *
+ * @param query SQL query
+ * @param phaseNanos Time spent in each phase, indexed by `QueryPhase.ordinal()`
+ * @param numRows Number of rows returned, or written by `export`. For
+ *                `stream`, the number of rows consumed before the stream
+ *                was closed
+ */
+public record QueryMetrics(SQLQuery query, long[] phaseNanos, long numRows) {
+    public long getNanos(QueryPhase phase) {
+        return phaseNanos[phase.ordinal()];
+    }
+
+    public long totalNanos() {
+        long total = 0;
+        for (long nanos : phaseNanos)
+            total += nanos;
+        return total;
+    }
+}
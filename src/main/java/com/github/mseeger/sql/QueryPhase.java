@@ -0,0 +1,20 @@
+package com.github.mseeger.sql;
+
+/**
+ * Phases of a query execution by `QueryExecutor`, measured by
+ * instrumentation. With `stream`, `FETCH` and `MAP` only cover the time
+ * spent in the stream, not by its consumer. With `runColumnar` and
+ * `export`, converting or writing rows counts as `FETCH`.
+ */
+public enum QueryPhase {
+    /** Obtaining a connection from the connection source */
+    ACQUIRE,
+    /** Preparing the statement and imputing parameters */
+    PREPARE,
+    /** `executeQuery`, until the first row can be read */
+    EXECUTE,
+    /** Iterating over the result set, without `MAP` */
+    FETCH,
+    /** Calls of `RowMapper.map` */
+    MAP
+}
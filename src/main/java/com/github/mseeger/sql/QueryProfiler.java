@@ -0,0 +1,218 @@
+package com.github.mseeger.sql;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps a running profile for each query string run by `QueryExecutor.run`:
+ * number of rows and estimated size of a row, averaged over recent
+ * executions. From these, the `FetchPlan` for the next execution is chosen:
+ * <ul>
+ *     <li>The result list is created with the expected number of rows as
+ *     capacity, so that it does not have to grow.</li>
+ *     <li>If the expected size of the result exceeds `memoryThreshold`, the
+ *     result is streamed from the server, so that it is not held in memory
+ *     twice (by the driver and in the result list). With cursor fetching
+ *     (positive streaming fetch size, see
+ *     `QueryExecutor.setStreamingFetchSize`), the fetch size is chosen so
+ *     that about `targetFetchBytes` are transferred per round trip.</li>
+ * </ul>
+ * Queries can fix their plan by overriding `SQLQuery.getFetchPlan`. At most
+ * `maxProfiles` query strings are profiled, further ones use
+ * `FetchPlan.defaultPlan`.
+ */
+public class QueryProfiler {
+    public static final int defaultMaxProfiles = 1024;
+    public static final long defaultMemoryThreshold = 32L * 1024 * 1024;
+    public static final int defaultTargetFetchBytes = 1024 * 1024;
+    /**
+     * Upper bound on the initial capacity of result lists, so that a single
+     * huge result does not make later executions allocate too much.
+     */
+    public static final int maxInitialCapacity = 1 << 20;
+    public static final int maxFetchSize = 100_000;
+    // Weight of the latest execution in running averages
+    private static final double smoothing = 0.2;
+    // Headroom on top of the expected number of rows
+    private static final double capacityFactor = 1.125;
+
+    private final ConcurrentHashMap<String, Profile> profiles = new ConcurrentHashMap<>();
+    private final int maxProfiles;
+    private final long memoryThreshold;
+    private final int targetFetchBytes;
+
+    /**
+     * @param maxProfiles Maximum number of query strings profiled
+     * @param memoryThreshold Results expected to be larger than this (in
+     *                        bytes) are streamed
+     * @param targetFetchBytes Bytes per round trip with cursor fetching
+     */
+    public QueryProfiler(int maxProfiles, long memoryThreshold, int targetFetchBytes) {
+        if (targetFetchBytes < 1)
+            throw new IllegalArgumentException("targetFetchBytes = " + targetFetchBytes + ", must be positive");
+        this.maxProfiles = maxProfiles;
+        this.memoryThreshold = memoryThreshold;
+        this.targetFetchBytes = targetFetchBytes;
+    }
+
+    public QueryProfiler(long memoryThreshold) {
+        this(defaultMaxProfiles, memoryThreshold, defaultTargetFetchBytes);
+    }
+
+    public QueryProfiler() {
+        this(defaultMaxProfiles, defaultMemoryThreshold, defaultTargetFetchBytes);
+    }
+
+    /**
+     * @param query SQL query
+     * @return Profile for the query string of `query`, which is created if
+     * needed. Null if `maxProfiles` profiles exist already
+     */
+    Profile profileFor(SQLQuery query) {
+        var queryString = query.getQueryString();
+        var profile = profiles.get(queryString);
+        if (profile == null && profiles.size() < maxProfiles)
+            profile = profiles.computeIfAbsent(queryString, _ -> new Profile());
+        return profile;
+    }
+
+    /**
+     * @param query SQL query
+     * @param streamingFetchSize Fetch size for streaming, see
+     *                           `QueryExecutor.getStreamingFetchSize`
+     * @return Plan for the next execution of `query`
+     */
+    public FetchPlan getPlan(SQLQuery query, int streamingFetchSize) {
+        var override = query.getFetchPlan();
+        if (override != null)
+            return override;
+        return planFor(profiles.get(query.getQueryString()), streamingFetchSize);
+    }
+
+    FetchPlan planFor(Profile profile, int streamingFetchSize) {
+        if (profile == null)
+            return FetchPlan.defaultPlan;
+        double meanRows;
+        double meanRowBytes;
+        synchronized (profile) {
+            if (profile.numExecutions == 0)
+                return FetchPlan.defaultPlan;
+            meanRows = profile.meanRows;
+            meanRowBytes = profile.meanRowBytes;
+        }
+        int initialCapacity = (int) Math.min(maxInitialCapacity, Math.ceil(meanRows * capacityFactor));
+        int fetchSize = 0;
+        if (meanRows * meanRowBytes > memoryThreshold) {
+            if (streamingFetchSize > 0) {
+                long rowsPerFetch = (long) (targetFetchBytes / Math.max(meanRowBytes, 1));
+                fetchSize = Math.clamp(rowsPerFetch, 1, maxFetchSize);
+            } else {
+                fetchSize = streamingFetchSize;
+            }
+        }
+        return new FetchPlan(initialCapacity, fetchSize);
+    }
+
+    /**
+     * @return Profiles per query string, sorted by query string
+     */
+    public Map<String, Profile> getProfiles() {
+        return new TreeMap<>(profiles);
+    }
+
+    /**
+     * @param queryString Query string
+     * @return Profile for this query string, or null if it has not run yet
+     */
+    public Profile getProfile(String queryString) {
+        return profiles.get(queryString);
+    }
+
+    public void reset() {
+        profiles.clear();
+    }
+
+    /**
+     * Estimates the memory used by the current row of `resultSet` once it is
+     * mapped, assuming 8 bytes per numerical value and UTF-16 strings.
+     *
+     * @param resultSet Result set, positioned on a row
+     * @return Estimated size in bytes
+     */
+    static long estimateRowBytes(ResultSet resultSet) throws SQLException {
+        var metaData = resultSet.getMetaData();
+        int numColumns = metaData.getColumnCount();
+        // Object header and reference in the result list
+        long numBytes = 16 + 8;
+        for (int i = 1; i <= numColumns; i++) {
+            if (ColumnarResult.columnType(metaData, i) == ColumnarResult.ColumnType.STRING) {
+                var value = resultSet.getString(i);
+                numBytes += value == null ? 8 : 40 + 2L * value.length();
+            } else {
+                numBytes += 8;
+            }
+        }
+        return numBytes;
+    }
+
+    /**
+     * Running profile of one query string. Averages are exponentially
+     * weighted, so that they follow changes of the data.
+     */
+    public static class Profile {
+        private long numExecutions = 0;
+        private double meanRows = 0;
+        private long maxRows = 0;
+        private double meanRowBytes = 0;
+
+        private Profile() {}
+
+        /**
+         * @param numRows Number of rows of the result
+         * @param rowBytes Estimated size of a row, or 0 if the result is
+         *                 empty
+         */
+        synchronized void record(long numRows, long rowBytes) {
+            if (numExecutions == 0) {
+                meanRows = numRows;
+            } else {
+                meanRows += smoothing * (numRows - meanRows);
+            }
+            if (rowBytes > 0) {
+                meanRowBytes = meanRowBytes == 0 ? rowBytes : meanRowBytes + smoothing * (rowBytes - meanRowBytes);
+            }
+            maxRows = Math.max(maxRows, numRows);
+            numExecutions++;
+        }
+
+        public synchronized long getNumExecutions() {
+            return numExecutions;
+        }
+
+        public synchronized double getMeanRows() {
+            return meanRows;
+        }
+
+        public synchronized long getMaxRows() {
+            return maxRows;
+        }
+
+        /**
+         * @return Estimated size of a row in bytes, see `estimateRowBytes`
+         */
+        public synchronized double getMeanRowBytes() {
+            return meanRowBytes;
+        }
+
+        @Override
+        public synchronized String toString() {
+            return String.format(
+                    "Profile{numExecutions=%d, meanRows=%.1f, maxRows=%d, meanRowBytes=%.1f}",
+                    numExecutions, meanRows, maxRows, meanRowBytes
+            );
+        }
+    }
+}
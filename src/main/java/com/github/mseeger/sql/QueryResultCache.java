@@ -0,0 +1,194 @@
+package com.github.mseeger.sql;
+
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+
+/**
+ * Caches query results, keyed by `QueryKey` (query string and parameter
+ * values). Entries expire after a time to live, and the least recently used
+ * entry is evicted once the cache is full.
+ * <p>
+ * If a time bucket is given, `Timestamp` and `LocalDateTime` parameters are
+ * rounded down to a multiple of it for the key. Queries whose reference times
+ * fall into the same bucket then share the result of the first of them.
+ * <p>
+ * Results must be invalidated explicitly when the underlying data changes,
+ * see `invalidateIf`.
+ *
+ * @param <T> Entity type
+ */
+public class QueryResultCache<T> {
+    private final int maxSize;
+    private final long timeToLiveNanos;
+    private final long timeBucketMillis;
+    // Source of `System.nanoTime` values, replaced in tests
+    private final LongSupplier nanoTime;
+    private final LinkedHashMap<QueryKey, Entry<T>> entries;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+    // Incremented by invalidations, guarded by `entries`
+    private long invalidationCount = 0;
+
+    /**
+     * @param maxSize Maximum number of cached results
+     * @param timeToLive Results expire after this time
+     * @param timeBucket Time stamp parameters are rounded down to a multiple
+     *                   of this for the key. Must be whole milliseconds. If
+     *                   `Duration.ZERO`, they are not rounded
+     */
+    public QueryResultCache(int maxSize, Duration timeToLive, Duration timeBucket) {
+        this(maxSize, timeToLive, timeBucket, System::nanoTime);
+    }
+
+    public QueryResultCache(int maxSize, Duration timeToLive) {
+        this(maxSize, timeToLive, Duration.ZERO);
+    }
+
+    QueryResultCache(int maxSize, Duration timeToLive, Duration timeBucket, LongSupplier nanoTime) {
+        if (maxSize < 1)
+            throw new IllegalArgumentException("maxSize = " + maxSize + ", must be positive");
+        if (timeBucket.isNegative() || timeBucket.toNanos() % 1_000_000 != 0)
+            throw new IllegalArgumentException(
+                    "timeBucket = " + timeBucket + ", must be zero or positive whole milliseconds"
+            );
+        this.maxSize = maxSize;
+        this.timeToLiveNanos = timeToLive.toNanos();
+        this.timeBucketMillis = timeBucket.toMillis();
+        this.nanoTime = nanoTime;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<QueryKey, Entry<T>> eldest) {
+                if (size() > QueryResultCache.this.maxSize) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns cached result for `query`, or calls `loader` and caches its
+     * result. Concurrent misses for the same key may each call `loader`. A
+     * result is not cached if an invalidation happened while it was loaded.
+     *
+     * @param query SQL query, used to compute the key
+     * @param loader Loads the result on a miss
+     * @return Result list, a copy which can be modified by the caller
+     */
+    public ArrayList<T> get(SQLQuery query, QueryLoader<T> loader) throws SQLException {
+        var key = keyFor(query);
+        long now = nanoTime.getAsLong();
+        long invalidationCountBefore;
+        synchronized (entries) {
+            invalidationCountBefore = invalidationCount;
+            var entry = entries.get(key);
+            if (entry != null) {
+                if (now - entry.created <= timeToLiveNanos) {
+                    hits.increment();
+                    return new ArrayList<>(entry.result);
+                }
+                entries.remove(key);
+                expirations.increment();
+            }
+        }
+        misses.increment();
+        var result = loader.load();
+        synchronized (entries) {
+            if (invalidationCount == invalidationCountBefore)
+                entries.put(key, new Entry<>(new ArrayList<>(result), now));
+        }
+        return result;
+    }
+
+    /**
+     * @param query SQL query
+     * @return Key under which the result for `query` is cached
+     */
+    public QueryKey keyFor(SQLQuery query) throws SQLException {
+        return timeBucketMillis > 0
+                ? QueryKey.of(query, this::roundToBucket)
+                : QueryKey.of(query);
+    }
+
+    private Object roundToBucket(Object value) {
+        if (value instanceof Timestamp timestamp) {
+            return new Timestamp(roundToBucket(timestamp.getTime()));
+        }
+        if (value instanceof LocalDateTime dateTime) {
+            long millis = dateTime.toInstant(ZoneOffset.UTC).toEpochMilli();
+            return LocalDateTime.ofInstant(Instant.ofEpochMilli(roundToBucket(millis)), ZoneOffset.UTC);
+        }
+        return value;
+    }
+
+    private long roundToBucket(long epochMillis) {
+        return Math.floorDiv(epochMillis, timeBucketMillis) * timeBucketMillis;
+    }
+
+    /**
+     * Removes all entries whose key satisfies `predicate`. Call this when
+     * data is written which affects cached results.
+     *
+     * @param predicate Selects keys to remove
+     * @return Number of entries removed
+     */
+    public int invalidateIf(Predicate<QueryKey> predicate) {
+        synchronized (entries) {
+            invalidationCount++;
+            int sizeBefore = entries.size();
+            entries.keySet().removeIf(predicate);
+            return sizeBefore - entries.size();
+        }
+    }
+
+    public void invalidateAll() {
+        synchronized (entries) {
+            invalidationCount++;
+            entries.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * @return Counters since the cache was created
+     */
+    public Statistics getStatistics() {
+        return new Statistics(
+                hits.sum(), misses.sum(), evictions.sum(), expirations.sum(), size()
+        );
+    }
+
+    /**
+     * @param hits Number of calls of `get` served from the cache
+     * @param misses Number of calls of `get` which called the loader
+     * @param evictions Number of entries evicted since the cache was full
+     * @param expirations Number of entries removed since they expired
+     * @param size Current number of entries
+     */
+    public record Statistics(long hits, long misses, long evictions, long expirations, int size) {
+        public double hitRate() {
+            long total = hits + misses;
+            return total == 0 ? 0 : (double) hits / total;
+        }
+    }
+
+    private record Entry<T>(ArrayList<T> result, long created) {}
+}
@@ -0,0 +1,99 @@
+package com.github.mseeger.sql;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Query listener which keeps latency histograms for each phase, plus total
+ * latency, row counts and error counts, per query name (see
+ * `SQLQuery.getName`).
+ */
+public class QueryStatistics implements QueryListener {
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+    @Override
+    public void onSuccess(QueryMetrics metrics) {
+        var entry = entryFor(metrics.query());
+        for (var phase : QueryPhase.values())
+            entry.phaseLatencies[phase.ordinal()].record(metrics.getNanos(phase));
+        entry.totalLatency.record(metrics.totalNanos());
+        entry.numRows.add(metrics.numRows());
+    }
+
+    @Override
+    public void onError(SQLQuery query, QueryPhase phase, Exception error) {
+        entryFor(query).numErrors.increment();
+    }
+
+    private Entry entryFor(SQLQuery query) {
+        return entries.computeIfAbsent(query.getName(), _ -> new Entry());
+    }
+
+    /**
+     * @return Statistics per query name, sorted by name
+     */
+    public Map<String, Entry> getEntries() {
+        return new TreeMap<>(entries);
+    }
+
+    /**
+     * @param queryName Name of query
+     * @return Statistics for this query, or null if it has not run yet
+     */
+    public Entry getEntry(String queryName) {
+        return entries.get(queryName);
+    }
+
+    public void reset() {
+        entries.clear();
+    }
+
+    public static class Entry {
+        private final LatencyHistogram[] phaseLatencies = new LatencyHistogram[QueryPhase.values().length];
+        private final LatencyHistogram totalLatency = new LatencyHistogram();
+        private final LongAdder numRows = new LongAdder();
+        private final LongAdder numErrors = new LongAdder();
+
+        private Entry() {
+            for (int i = 0; i < phaseLatencies.length; i++)
+                phaseLatencies[i] = new LatencyHistogram();
+        }
+
+        /**
+         * @return Latencies of this phase, in nanoseconds
+         */
+        public LatencyHistogram getLatency(QueryPhase phase) {
+            return phaseLatencies[phase.ordinal()];
+        }
+
+        /**
+         * @return Latencies of complete queries, in nanoseconds
+         */
+        public LatencyHistogram getTotalLatency() {
+            return totalLatency;
+        }
+
+        public long getNumRows() {
+            return numRows.sum();
+        }
+
+        public long getNumErrors() {
+            return numErrors.sum();
+        }
+
+        @Override
+        public String toString() {
+            return String.format(
+                    "calls=%d, errors=%d, rows=%d, p50=%.3fms, p99=%.3fms, max=%.3fms",
+                    totalLatency.getCount(),
+                    getNumErrors(),
+                    getNumRows(),
+                    totalLatency.getPercentile(50) / 1e6,
+                    totalLatency.getPercentile(99) / 1e6,
+                    totalLatency.getMax() / 1e6
+            );
+        }
+    }
+}
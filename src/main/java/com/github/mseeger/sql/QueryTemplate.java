@@ -0,0 +1,395 @@
+package com.github.mseeger.sql;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Query string with named parameters ":name", which is parsed once. The
+ * placeholders are rewritten to "?" slots, and an immutable binding plan
+ * maps each parameter to its slot indices and the JDBC setter for its type.
+ * A parameter can be used several times in the query string.
+ * <p>
+ * Every placeholder must be declared with a type, and every declared
+ * parameter must be used. Both are checked by the constructor. Placeholders
+ * inside string literals, quoted identifiers and comments are ignored, as
+ * are "::" and ":=".
+ * <p>
+ * In order to run the query, call `bind` and set values for all parameters.
+ * For minimal overhead, resolve parameter names to indices once by
+ * `indexOf`, and use the setters taking an index:
+ * <pre>
+ * static final QueryTemplate template = new QueryTemplate(
+ *         "FilmsByID", "SELECT title FROM film WHERE film_id = :filmID",
+ *         Map.of("filmID", QueryTemplate.ParameterType.INT));
+ * static final int filmIDParameter = template.indexOf("filmID");
+ * ...
+ * executor.run(template.bind().setInt(filmIDParameter, 42), rowMapper);
+ * </pre>
+ */
+public final class QueryTemplate {
+    /**
+     * Types of parameters, and how they are set. `TIMESTAMP` values are
+     * given as `LocalDateTime`, and set by `setTimestamp` after conversion
+     * by `Timestamp.valueOf`, as hand-written queries do.
+     */
+    public enum ParameterType { INT, LONG, DOUBLE, STRING, TIMESTAMP }
+
+    private final String name;
+    private final String queryString;
+    private final boolean readOnly;
+    // Binding plan, indexed by parameter index
+    private final String[] parameterNames;
+    private final ParameterType[] parameterTypes;
+    private final int[][] parameterSlots;
+    private final Map<String, Integer> parameterIndices;
+
+    /**
+     * @param name Name of query, see `SQLQuery.getName`
+     * @param namedQueryString Query string with ":name" placeholders
+     * @param parameterTypes Maps parameter names to types. Must contain
+     *                       exactly the names used in `namedQueryString`
+     * @param readOnly See `SQLQuery.isReadOnly`
+     * @throws IllegalArgumentException if a placeholder is not declared in
+     *                                  `parameterTypes`, or a declared
+     *                                  parameter is not used
+     */
+    public QueryTemplate(
+            String name,
+            String namedQueryString,
+            Map<String, ParameterType> parameterTypes,
+            boolean readOnly
+    ) {
+        this.name = name;
+        this.readOnly = readOnly;
+        var slots = new LinkedHashMap<String, ArrayList<Integer>>();
+        this.queryString = parse(namedQueryString, slots);
+        for (var parameterName : slots.keySet()) {
+            if (!parameterTypes.containsKey(parameterName))
+                throw new IllegalArgumentException(
+                        "Placeholder ':" + parameterName + "' has no declared type"
+                );
+        }
+        for (var parameterName : parameterTypes.keySet()) {
+            if (!slots.containsKey(parameterName))
+                throw new IllegalArgumentException(
+                        "Parameter '" + parameterName + "' is not used in the query string"
+                );
+        }
+        int numParameters = slots.size();
+        this.parameterNames = new String[numParameters];
+        this.parameterTypes = new ParameterType[numParameters];
+        this.parameterSlots = new int[numParameters][];
+        var indices = new HashMap<String, Integer>();
+        int index = 0;
+        for (var entry : slots.entrySet()) {
+            parameterNames[index] = entry.getKey();
+            this.parameterTypes[index] = parameterTypes.get(entry.getKey());
+            parameterSlots[index] = entry.getValue().stream().mapToInt(Integer::intValue).toArray();
+            indices.put(entry.getKey(), index);
+            index++;
+        }
+        this.parameterIndices = Map.copyOf(indices);
+    }
+
+    public QueryTemplate(
+            String name,
+            String namedQueryString,
+            Map<String, ParameterType> parameterTypes
+    ) {
+        this(name, namedQueryString, parameterTypes, false);
+    }
+
+    /**
+     * Rewrites placeholders to "?" and collects the slot indices for each
+     * parameter name, in order of first use.
+     */
+    private static String parse(String namedQueryString, Map<String, ArrayList<Integer>> slots) {
+        var out = new StringBuilder(namedQueryString.length());
+        int length = namedQueryString.length();
+        int numSlots = 0;
+        int pos = 0;
+        while (pos < length) {
+            char c = namedQueryString.charAt(pos);
+            int end;
+            if (c == '\'' || c == '"' || c == '`') {
+                end = skipQuoted(namedQueryString, pos, c);
+            } else if (c == '#' || (c == '-' && namedQueryString.startsWith("--", pos))) {
+                end = namedQueryString.indexOf('\n', pos);
+                end = end < 0 ? length : end;
+            } else if (c == '/' && namedQueryString.startsWith("/*", pos)) {
+                end = namedQueryString.indexOf("*/", pos + 2);
+                end = end < 0 ? length : end + 2;
+            } else if (c == '?') {
+                throw new IllegalArgumentException(
+                        "Query string must not contain '?' slots, use ':name' placeholders"
+                );
+            } else if (c == ':' && pos + 1 < length
+                    && Character.isJavaIdentifierStart(namedQueryString.charAt(pos + 1))
+                    && (pos == 0 || namedQueryString.charAt(pos - 1) != ':')) {
+                end = pos + 2;
+                while (end < length && Character.isJavaIdentifierPart(namedQueryString.charAt(end)))
+                    end++;
+                var parameterName = namedQueryString.substring(pos + 1, end);
+                slots.computeIfAbsent(parameterName, _ -> new ArrayList<>()).add(++numSlots);
+                out.append('?');
+                pos = end;
+                continue;
+            } else {
+                end = pos + 1;
+            }
+            out.append(namedQueryString, pos, end);
+            pos = end;
+        }
+        return out.toString();
+    }
+
+    /**
+     * @return Position after the closing quote, where a backslash escapes
+     * the next character
+     */
+    private static int skipQuoted(String s, int start, char quote) {
+        int pos = start + 1;
+        while (pos < s.length()) {
+            char c = s.charAt(pos);
+            if (c == '\\' && quote != '`') {
+                pos += 2;
+            } else if (c == quote) {
+                return pos + 1;
+            } else {
+                pos++;
+            }
+        }
+        return s.length();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return Query string with "?" slots
+     */
+    public String getQueryString() {
+        return queryString;
+    }
+
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    public int getNumParameters() {
+        return parameterNames.length;
+    }
+
+    /**
+     * @param parameterName Name of parameter
+     * @return Index of parameter, to be used with the setters of `Bound`
+     * @throws NoSuchElementException if there is no such parameter
+     */
+    public int indexOf(String parameterName) {
+        var index = parameterIndices.get(parameterName);
+        if (index == null)
+            throw new NoSuchElementException("Unknown parameter '" + parameterName + "'");
+        return index;
+    }
+
+    public ParameterType getType(String parameterName) {
+        return parameterTypes[indexOf(parameterName)];
+    }
+
+    /**
+     * @param parameterName Name of parameter
+     * @return Slot indices of the parameter in `getQueryString`, starting
+     * from 1
+     */
+    public int[] getSlots(String parameterName) {
+        return parameterSlots[indexOf(parameterName)].clone();
+    }
+
+    /**
+     * @return New query, whose parameter values are yet to be set
+     */
+    public Bound bind() {
+        return new Bound(this);
+    }
+
+    /**
+     * Query created from a template by `bind`. Values for all parameters
+     * must be set before it is run. Setters return this query, so they can
+     * be chained.
+     */
+    public static final class Bound extends SQLQuery {
+        private final QueryTemplate template;
+        // Values of `INT` and `LONG` parameters
+        private final long[] longValues;
+        private final double[] doubleValues;
+        // Values of `STRING` and `TIMESTAMP` parameters, the latter as
+        // `Timestamp`
+        private final Object[] objectValues;
+        private final boolean[] isSet;
+
+        private Bound(QueryTemplate template) {
+            int numParameters = template.getNumParameters();
+            this.template = template;
+            this.longValues = new long[numParameters];
+            this.doubleValues = new double[numParameters];
+            this.objectValues = new Object[numParameters];
+            this.isSet = new boolean[numParameters];
+        }
+
+        public Bound setInt(int index, int value) {
+            checkType(index, ParameterType.INT);
+            longValues[index] = value;
+            isSet[index] = true;
+            return this;
+        }
+
+        public Bound setLong(int index, long value) {
+            checkType(index, ParameterType.LONG);
+            longValues[index] = value;
+            isSet[index] = true;
+            return this;
+        }
+
+        public Bound setDouble(int index, double value) {
+            checkType(index, ParameterType.DOUBLE);
+            doubleValues[index] = value;
+            isSet[index] = true;
+            return this;
+        }
+
+        /**
+         * @param value Value, null for NULL
+         */
+        public Bound setString(int index, String value) {
+            checkType(index, ParameterType.STRING);
+            objectValues[index] = value;
+            isSet[index] = true;
+            return this;
+        }
+
+        /**
+         * @param value Value, null for NULL
+         */
+        public Bound setTimestamp(int index, LocalDateTime value) {
+            checkType(index, ParameterType.TIMESTAMP);
+            objectValues[index] = value == null ? null : Timestamp.valueOf(value);
+            isSet[index] = true;
+            return this;
+        }
+
+        public Bound setInt(String parameterName, int value) {
+            return setInt(template.indexOf(parameterName), value);
+        }
+
+        public Bound setLong(String parameterName, long value) {
+            return setLong(template.indexOf(parameterName), value);
+        }
+
+        public Bound setDouble(String parameterName, double value) {
+            return setDouble(template.indexOf(parameterName), value);
+        }
+
+        public Bound setString(String parameterName, String value) {
+            return setString(template.indexOf(parameterName), value);
+        }
+
+        public Bound setTimestamp(String parameterName, LocalDateTime value) {
+            return setTimestamp(template.indexOf(parameterName), value);
+        }
+
+        private void checkType(int index, ParameterType type) {
+            if (template.parameterTypes[index] != type)
+                throw new IllegalArgumentException(
+                        "Parameter '" + template.parameterNames[index] + "' has type "
+                                + template.parameterTypes[index] + ", not " + type
+                );
+        }
+
+        public QueryTemplate getTemplate() {
+            return template;
+        }
+
+        /**
+         * @return New query for the same template, with the same parameter
+         * values set
+         */
+        public Bound copy() {
+            var copy = new Bound(template);
+            System.arraycopy(longValues, 0, copy.longValues, 0, longValues.length);
+            System.arraycopy(doubleValues, 0, copy.doubleValues, 0, doubleValues.length);
+            System.arraycopy(objectValues, 0, copy.objectValues, 0, objectValues.length);
+            System.arraycopy(isSet, 0, copy.isSet, 0, isSet.length);
+            return copy;
+        }
+
+        @Override
+        protected String getQueryString() {
+            return template.queryString;
+        }
+
+        @Override
+        public String getName() {
+            return template.name;
+        }
+
+        @Override
+        public boolean isReadOnly() {
+            return template.readOnly;
+        }
+
+        /**
+         * @throws IllegalStateException if a parameter has not been set
+         */
+        @Override
+        protected void imputeParameters(PreparedStatement statement) throws SQLException {
+            var types = template.parameterTypes;
+            var slots = template.parameterSlots;
+            for (int i = 0; i < types.length; i++) {
+                if (!isSet[i])
+                    throw new IllegalStateException(
+                            "Parameter '" + template.parameterNames[i] + "' of query '"
+                                    + template.name + "' is not set"
+                    );
+                for (int slot : slots[i]) {
+                    switch (types[i]) {
+                        case INT -> statement.setInt(slot, (int) longValues[i]);
+                        case LONG -> statement.setLong(slot, longValues[i]);
+                        case DOUBLE -> statement.setDouble(slot, doubleValues[i]);
+                        case STRING -> statement.setString(slot, (String) objectValues[i]);
+                        case TIMESTAMP -> {
+                            if (objectValues[i] == null) {
+                                statement.setNull(slot, Types.TIMESTAMP);
+                            } else {
+                                statement.setTimestamp(slot, (Timestamp) objectValues[i]);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        @Override
+        public String toString() {
+            var values = new String[isSet.length];
+            for (int i = 0; i < values.length; i++) {
+                Object value = switch (template.parameterTypes[i]) {
+                    case INT, LONG -> longValues[i];
+                    case DOUBLE -> doubleValues[i];
+                    case STRING, TIMESTAMP -> objectValues[i];
+                };
+                values[i] = template.parameterNames[i] + "=" + (isSet[i] ? value : "<unset>");
+            }
+            return template.name + Arrays.toString(values);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.github.mseeger.sql;
+
+/**
+ * Converts fields of entity objects to strings by direct getter calls.
+ * Implementations are generated for classes annotated by `TableEntity`, and
+ * registered as services, so that they are found without reflection.
+ * <p>
+ * Fields are indexed in the order in which the getters are declared.
+ *
+ * @param <T> Entity type
+ */
+public interface RecordConverter<T> {
+    Class<T> getEntityType();
+
+    /**
+     * @return Field names, derived from the getter names
+     */
+    String[] getFieldNames();
+
+    /**
+     * @return Getter names, such as "getTitle"
+     */
+    String[] getGetterNames();
+
+    /**
+     * @return Return types of getters
+     */
+    Class<?>[] getFieldTypes();
+
+    /**
+     * @return Value of the static `columnNames` field of the entity class,
+     * or null if there is none
+     */
+    String[] getColumnNames();
+
+    /**
+     * Values of `int`, `long` and `double` fields are passed to the
+     * primitive overloads of `converter`, all others to `convert`.
+     *
+     * @param entity Entity object
+     * @param index Index of field
+     * @param converter Converts the field value
+     * @return Field value converted to string
+     */
+    String valueAsString(T entity, int index, EntryToStringConverter converter);
+
+    /**
+     * @param entityType Entity class
+     * @return Generated converter for `entityType`, or null if there is none
+     */
+    @SuppressWarnings("unchecked")
+    static <T> RecordConverter<T> forEntityType(Class<T> entityType) {
+        return (RecordConverter<T>) RecordConverterRegistry.get(entityType);
+    }
+}
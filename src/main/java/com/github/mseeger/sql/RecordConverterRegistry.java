@@ -0,0 +1,23 @@
+package com.github.mseeger.sql;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.ServiceLoader;
+
+/**
+ * Loads all generated `RecordConverter`s once, when first needed.
+ */
+class RecordConverterRegistry {
+    private static final Map<Class<?>, RecordConverter<?>> converters = load();
+
+    private static Map<Class<?>, RecordConverter<?>> load() {
+        var result = new HashMap<Class<?>, RecordConverter<?>>();
+        for (RecordConverter<?> converter : ServiceLoader.load(RecordConverter.class, RecordConverter.class.getClassLoader()))
+            result.put(converter.getEntityType(), converter);
+        return Map.copyOf(result);
+    }
+
+    static RecordConverter<?> get(Class<?> entityType) {
+        return converters.get(entityType);
+    }
+}
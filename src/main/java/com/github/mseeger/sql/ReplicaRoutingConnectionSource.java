@@ -0,0 +1,278 @@
+package com.github.mseeger.sql;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Connection source for a primary with read replicas, see
+ * `ConnectionConfig.withReplica`. There is a `ConnectionPool` for every
+ * host.
+ * <p>
+ * `getConnection()` and `getConnection(false)` always return a connection
+ * to the primary. `getConnection(true)` returns a connection to the replica
+ * with the least outstanding requests (borrowed connections) relative to
+ * its weight. Replicas which are down are skipped, and if all replicas are
+ * down, the primary is used.
+ * <p>
+ * A replica is marked down after `failureThreshold` consecutive failures,
+ * either of health checks or of borrowing a connection. Health checks open
+ * a new connection to every host at a fixed interval, and mark a replica up
+ * again once it responds. Hosts are checked independently of each other,
+ * and each check is bounded by the validation timeout of the pool (or
+ * `defaultHealthCheckTimeout`, if validation is switched off), which is
+ * also used as connect and socket timeout.
+ */
+public class ReplicaRoutingConnectionSource implements ConnectionSource {
+    public static final Duration defaultHealthCheckInterval = Duration.ofSeconds(5);
+    public static final int defaultFailureThreshold = 3;
+    public static final Duration defaultHealthCheckTimeout = Duration.ofSeconds(5);
+
+    private final Host primary;
+    private final List<Host> replicas;
+    private final int failureThreshold;
+    private final int validationTimeoutSeconds;
+    private final ScheduledExecutorService healthChecker;
+    // Rotates the order in which equally loaded replicas are considered
+    private final AtomicInteger nextReplica = new AtomicInteger();
+
+    /**
+     * @param connectionConfig Configuration of primary and replicas
+     * @param poolConfig Configuration of the pool for every host
+     * @param healthCheckInterval Time between health checks of a host
+     * @param failureThreshold Number of consecutive failures after which a
+     *                         replica is marked down
+     */
+    public ReplicaRoutingConnectionSource(
+            ConnectionConfig connectionConfig,
+            ConnectionPoolConfig poolConfig,
+            Duration healthCheckInterval,
+            int failureThreshold
+    ) {
+        if (failureThreshold < 1)
+            throw new IllegalArgumentException("failureThreshold = " + failureThreshold + ", must be positive");
+        long period = healthCheckInterval.toMillis();
+        if (period < 1)
+            throw new IllegalArgumentException(
+                    "healthCheckInterval = " + healthCheckInterval + ", must be at least 1 ms"
+            );
+        this.failureThreshold = failureThreshold;
+        var healthCheckTimeout = poolConfig.getValidationTimeout();
+        if (healthCheckTimeout.isZero() || healthCheckTimeout.isNegative())
+            healthCheckTimeout = defaultHealthCheckTimeout;
+        this.validationTimeoutSeconds = ConnectionPool.validationTimeoutSeconds(healthCheckTimeout);
+        this.primary = new Host(connectionConfig, 0, poolConfig, healthCheckTimeout);
+        var replicas = new ArrayList<Host>();
+        for (var replica : connectionConfig.getReplicas()) {
+            replicas.add(new Host(
+                    connectionConfig.forReplica(replica), replica.weight(), poolConfig, healthCheckTimeout
+            ));
+        }
+        this.replicas = List.copyOf(replicas);
+        var hosts = allHosts();
+        this.healthChecker = Executors.newScheduledThreadPool(hosts.size(), runnable -> {
+            var thread = new Thread(runnable, "replica-health-checker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // One task per host, so that an unreachable host does not delay
+        // checks of the others
+        for (var host : hosts) {
+            healthChecker.scheduleWithFixedDelay(
+                    () -> checkHealth(host), period, period, TimeUnit.MILLISECONDS
+            );
+        }
+    }
+
+    public ReplicaRoutingConnectionSource(
+            ConnectionConfig connectionConfig,
+            ConnectionPoolConfig poolConfig
+    ) {
+        this(connectionConfig, poolConfig, defaultHealthCheckInterval, defaultFailureThreshold);
+    }
+
+    public ReplicaRoutingConnectionSource(ConnectionConfig connectionConfig) {
+        this(connectionConfig, new ConnectionPoolConfig());
+    }
+
+    /**
+     * @return Connection to the primary
+     */
+    @Override
+    public Connection getConnection() throws SQLException {
+        return primary.pool.getConnection();
+    }
+
+    /**
+     * @param readOnly If true, the connection is to a replica, unless all of
+     *                 them are down
+     * @return Connection, to be closed by the caller
+     */
+    @Override
+    public Connection getConnection(boolean readOnly) throws SQLException {
+        if (!readOnly)
+            return getConnection();
+        var tried = new boolean[replicas.size()];
+        int index;
+        while ((index = selectReplica(tried)) >= 0) {
+            var replica = replicas.get(index);
+            try {
+                var connection = replica.pool.getConnection();
+                replica.recordSuccess();
+                return connection;
+            } catch (SQLTimeoutException _) {
+                // Pool is exhausted, but the replica is not down
+                tried[index] = true;
+            } catch (SQLException _) {
+                replica.recordFailure(failureThreshold);
+                tried[index] = true;
+            }
+        }
+        return getConnection();
+    }
+
+    /**
+     * Selects the replica which is up and has the smallest number of
+     * borrowed connections divided by weight. Replicas whose pool is
+     * exhausted are only selected if there is no other one.
+     *
+     * @param tried Replicas which are not considered
+     * @return Index of replica, or -1 if there is none
+     */
+    private int selectReplica(boolean[] tried) {
+        int numReplicas = replicas.size();
+        int start = Math.floorMod(nextReplica.getAndIncrement(), Math.max(numReplicas, 1));
+        int best = -1;
+        boolean bestExhausted = true;
+        long bestLoad = 0;
+        int bestWeight = 1;
+        for (int k = 0; k < numReplicas; k++) {
+            int index = (start + k) % numReplicas;
+            var replica = replicas.get(index);
+            if (tried[index] || !replica.up)
+                continue;
+            long load = replica.pool.getNumBorrowed() + 1;
+            boolean exhausted = load > replica.maxSize;
+            // Compare load / weight without division
+            if (best < 0
+                    || (bestExhausted && !exhausted)
+                    || (bestExhausted == exhausted && load * bestWeight < bestLoad * replica.weight)
+            ) {
+                best = index;
+                bestExhausted = exhausted;
+                bestLoad = load;
+                bestWeight = replica.weight;
+            }
+        }
+        return best;
+    }
+
+    private void checkHealth(Host host) {
+        boolean valid;
+        try (var connection = host.healthCheckSource.getConnection()) {
+            valid = connection.isValid(validationTimeoutSeconds);
+        } catch (SQLException | RuntimeException _) {
+            valid = false;
+        }
+        if (valid) {
+            host.recordSuccess();
+        } else {
+            host.recordFailure(failureThreshold);
+        }
+    }
+
+    /**
+     * Runs health checks for all hosts now, one after the other, instead of
+     * waiting for the next scheduled check.
+     */
+    public void checkHealthNow() {
+        for (var host : allHosts())
+            checkHealth(host);
+    }
+
+    /**
+     * Closes the pools of all hosts and stops health checks.
+     */
+    @Override
+    public void close() {
+        healthChecker.shutdownNow();
+        for (var host : allHosts())
+            host.pool.close();
+    }
+
+    /**
+     * @param url JDBC URL of host
+     * @param weight Weight of replica, 0 for the primary
+     * @param up Is the host considered up? The primary is always used for
+     *           writes, even if health checks fail
+     * @param numBorrowed Number of connections currently borrowed
+     */
+    public record HostStatus(String url, int weight, boolean up, int numBorrowed) {}
+
+    /**
+     * @return Status of primary, followed by replicas in the order they
+     * were configured
+     */
+    public List<HostStatus> getHostStatus() {
+        return allHosts().stream()
+                .map(host -> new HostStatus(host.url, host.weight, host.up, host.pool.getNumBorrowed()))
+                .toList();
+    }
+
+    private List<Host> allHosts() {
+        var hosts = new ArrayList<Host>(replicas.size() + 1);
+        hosts.add(primary);
+        hosts.addAll(replicas);
+        return hosts;
+    }
+
+    private static class Host {
+        private final String url;
+        private final int weight;
+        private final int maxSize;
+        private final ConnectionPool pool;
+        // Health checks bypass the pool, so that they do not wait for it
+        private final ConnectionSource healthCheckSource;
+        private final AtomicInteger consecutiveFailures = new AtomicInteger();
+        private volatile boolean up = true;
+
+        Host(
+                ConnectionConfig connectionConfig,
+                int weight,
+                ConnectionPoolConfig poolConfig,
+                Duration healthCheckTimeout
+        ) {
+            this.url = connectionConfig.getURL();
+            this.weight = weight;
+            this.maxSize = poolConfig.getMaxSize();
+            this.pool = new ConnectionPool(connectionConfig, poolConfig);
+            // Connector/J timeouts in milliseconds, so that connecting to an
+            // unreachable host does not hang
+            var timeoutMillis = Long.toString(Math.max(healthCheckTimeout.toMillis(), 1));
+            this.healthCheckSource = new DriverManagerConnectionSource(
+                    connectionConfig
+                            .withDriverProperty("connectTimeout", timeoutMillis)
+                            .withDriverProperty("socketTimeout", timeoutMillis)
+            );
+        }
+
+        void recordSuccess() {
+            if (!up || consecutiveFailures.get() != 0) {
+                consecutiveFailures.set(0);
+                up = true;
+            }
+        }
+
+        void recordFailure(int failureThreshold) {
+            if (consecutiveFailures.incrementAndGet() >= failureThreshold)
+                up = false;
+        }
+    }
+}
@@ -0,0 +1,339 @@
+package com.github.mseeger.sql;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Writes rows of a `ResultSet` to a `WritableByteChannel`, without creating
+ * entity objects. Values are encoded into a direct `ByteBuffer`, which is
+ * written to the channel whenever it is full. Buffers are taken from a
+ * small pool and reused across exports.
+ * <p>
+ * Writing blocks while the channel does not accept more bytes, so that rows
+ * are read from the result set no faster than they can be written. If the
+ * result set streams rows, this backpressure reaches the database server.
+ * The channel must be in blocking mode.
+ * <p>
+ * See `ExportFormat` for the formats, and `QueryExecutor.export` for
+ * exporting the result of a query.
+ */
+public final class ResultSetExporter {
+    public static final int bufferSize = 64 * 1024;
+    private static final int maxPooledBuffers = 16;
+    private static final byte[] binaryMagic = {'S', 'Q', 'L', 'X'};
+    private static final byte binaryVersion = 1;
+    private static final byte[] crlf = {'\r', '\n'};
+    private static final ConcurrentLinkedQueue<ByteBuffer> bufferPool = new ConcurrentLinkedQueue<>();
+
+    private final WritableByteChannel channel;
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private final byte[] digits = new byte[20];
+    private ByteBuffer buffer;
+
+    private ResultSetExporter(WritableByteChannel channel, ByteBuffer buffer) {
+        this.channel = channel;
+        this.buffer = buffer;
+    }
+
+    /**
+     * Writes all remaining rows of `resultSet` to `channel`. Neither of them
+     * is closed here.
+     *
+     * @param resultSet Result set
+     * @param channel Bytes are written here
+     * @param format Export format
+     * @return Number of rows written
+     */
+    public static long export(
+            ResultSet resultSet,
+            WritableByteChannel channel,
+            ExportFormat format
+    ) throws SQLException, IOException {
+        var buffer = bufferPool.poll();
+        if (buffer == null)
+            buffer = ByteBuffer.allocateDirect(bufferSize);
+        var exporter = new ResultSetExporter(channel, buffer);
+        try {
+            return switch (format) {
+                case CSV -> exporter.exportCSV(resultSet);
+                case BINARY -> exporter.exportBinary(resultSet);
+            };
+        } finally {
+            // Buffers grown for large rows are not pooled
+            var usedBuffer = exporter.buffer;
+            if (usedBuffer.capacity() == bufferSize && bufferPool.size() < maxPooledBuffers) {
+                usedBuffer.clear();
+                bufferPool.offer(usedBuffer);
+            }
+        }
+    }
+
+    private long exportCSV(ResultSet resultSet) throws SQLException, IOException {
+        var metaData = resultSet.getMetaData();
+        int numColumns = metaData.getColumnCount();
+        var types = new ColumnarResult.ColumnType[numColumns];
+        for (int i = 0; i < numColumns; i++) {
+            types[i] = ColumnarResult.columnType(metaData, i + 1);
+            if (i > 0) putByte((byte) ',');
+            putCSVString(metaData.getColumnLabel(i + 1));
+        }
+        putBytes(crlf);
+        long numRows = 0;
+        while (resultSet.next()) {
+            for (int i = 0; i < numColumns; i++) {
+                if (i > 0) putByte((byte) ',');
+                int index = i + 1;
+                switch (types[i]) {
+                    case INT, LONG -> {
+                        long value = resultSet.getLong(index);
+                        if (!resultSet.wasNull())
+                            putDecimal(value);
+                    }
+                    case DOUBLE -> {
+                        double value = resultSet.getDouble(index);
+                        if (!resultSet.wasNull())
+                            putString(Double.toString(value));
+                    }
+                    case STRING -> {
+                        var value = resultSet.getString(index);
+                        if (value != null)
+                            putCSVString(value);
+                    }
+                }
+            }
+            putBytes(crlf);
+            numRows++;
+        }
+        flush();
+        return numRows;
+    }
+
+    /**
+     * Quotes `value` if it contains a separator, quote or line break, as
+     * required by RFC 4180.
+     */
+    private void putCSVString(String value) throws IOException {
+        boolean needsQuotes = false;
+        for (int i = 0; i < value.length() && !needsQuotes; i++) {
+            char c = value.charAt(i);
+            needsQuotes = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!needsQuotes) {
+            putString(value);
+        } else {
+            putByte((byte) '"');
+            putString(value.replace("\"", "\"\""));
+            putByte((byte) '"');
+        }
+    }
+
+    private long exportBinary(ResultSet resultSet) throws SQLException, IOException {
+        var metaData = resultSet.getMetaData();
+        int numColumns = metaData.getColumnCount();
+        var types = new ColumnarResult.ColumnType[numColumns];
+        putBytes(binaryMagic);
+        putByte(binaryVersion);
+        ensureRemaining(Integer.BYTES);
+        buffer.putInt(numColumns);
+        for (int i = 0; i < numColumns; i++) {
+            types[i] = ColumnarResult.columnType(metaData, i + 1);
+            putByte((byte) types[i].ordinal());
+            putLengthPrefixedString(metaData.getColumnLabel(i + 1));
+        }
+        int bitmapSize = (numColumns + 7) / 8;
+        var strings = new String[numColumns];
+        var longs = new long[numColumns];
+        var doubles = new double[numColumns];
+        var nulls = new boolean[numColumns];
+        long numRows = 0;
+        while (resultSet.next()) {
+            // Read the row first, so that it can be encoded again if it does
+            // not fit into the buffer
+            for (int i = 0; i < numColumns; i++) {
+                int index = i + 1;
+                switch (types[i]) {
+                    case INT, LONG -> longs[i] = resultSet.getLong(index);
+                    case DOUBLE -> doubles[i] = resultSet.getDouble(index);
+                    case STRING -> strings[i] = resultSet.getString(index);
+                }
+                nulls[i] = resultSet.wasNull();
+            }
+            while (!encodeBinaryRow(types, bitmapSize, longs, doubles, strings, nulls))
+                makeRoomForRow();
+            numRows++;
+        }
+        ensureRemaining(Integer.BYTES);
+        buffer.putInt(-1);
+        flush();
+        return numRows;
+    }
+
+    /**
+     * Encodes a row at the current buffer position.
+     *
+     * @return False if the row does not fit into the remaining buffer. The
+     * buffer position is then reset to the start of the row
+     */
+    private boolean encodeBinaryRow(
+            ColumnarResult.ColumnType[] types,
+            int bitmapSize,
+            long[] longs,
+            double[] doubles,
+            String[] strings,
+            boolean[] nulls
+    ) {
+        int rowStart = buffer.position();
+        if (buffer.remaining() < Integer.BYTES + bitmapSize)
+            return false;
+        buffer.position(rowStart + Integer.BYTES);
+        for (int byteIndex = 0; byteIndex < bitmapSize; byteIndex++) {
+            int bits = 0;
+            for (int bit = 0; bit < 8; bit++) {
+                int column = 8 * byteIndex + bit;
+                if (column < nulls.length && nulls[column])
+                    bits |= 1 << bit;
+            }
+            buffer.put((byte) bits);
+        }
+        for (int i = 0; i < types.length; i++) {
+            if (nulls[i])
+                continue;
+            boolean fits = switch (types[i]) {
+                case INT -> {
+                    if (buffer.remaining() < Integer.BYTES) yield false;
+                    buffer.putInt((int) longs[i]);
+                    yield true;
+                }
+                case LONG -> {
+                    if (buffer.remaining() < Long.BYTES) yield false;
+                    buffer.putLong(longs[i]);
+                    yield true;
+                }
+                case DOUBLE -> {
+                    if (buffer.remaining() < Double.BYTES) yield false;
+                    buffer.putDouble(doubles[i]);
+                    yield true;
+                }
+                case STRING -> encodeLengthPrefixed(strings[i]);
+            };
+            if (!fits) {
+                buffer.position(rowStart);
+                return false;
+            }
+        }
+        buffer.putInt(rowStart, buffer.position() - rowStart - Integer.BYTES);
+        return true;
+    }
+
+    /**
+     * Writes out all complete rows in the buffer. If the buffer holds no
+     * complete row, the row is larger than the buffer, which is then grown.
+     */
+    private void makeRoomForRow() throws IOException {
+        if (buffer.position() > 0) {
+            flush();
+        } else {
+            buffer = ByteBuffer.allocateDirect(2 * buffer.capacity());
+        }
+    }
+
+    /**
+     * Encodes `value` with length prefix at the current position.
+     *
+     * @return False if it does not fit. The position is undefined then
+     */
+    private boolean encodeLengthPrefixed(String value) {
+        if (buffer.remaining() < Integer.BYTES)
+            return false;
+        int lengthPosition = buffer.position();
+        buffer.position(lengthPosition + Integer.BYTES);
+        encoder.reset();
+        var chars = CharBuffer.wrap(value);
+        if (encoder.encode(chars, buffer, true).isOverflow() || encoder.flush(buffer).isOverflow())
+            return false;
+        buffer.putInt(lengthPosition, buffer.position() - lengthPosition - Integer.BYTES);
+        return true;
+    }
+
+    private void putLengthPrefixedString(String value) throws IOException {
+        int start = buffer.position();
+        while (!encodeLengthPrefixed(value)) {
+            buffer.position(start);
+            makeRoomForRow();
+            start = buffer.position();
+        }
+    }
+
+    /**
+     * Encodes `value` as UTF-8, writing out the buffer whenever it is full.
+     */
+    private void putString(String value) throws IOException {
+        encoder.reset();
+        var chars = CharBuffer.wrap(value);
+        CoderResult result;
+        while ((result = encoder.encode(chars, buffer, true)).isOverflow())
+            flush();
+        if (result.isError())
+            result.throwException();
+        while (encoder.flush(buffer).isOverflow())
+            flush();
+    }
+
+    /**
+     * Writes `value` as decimal ASCII digits.
+     */
+    private void putDecimal(long value) throws IOException {
+        if (value == Long.MIN_VALUE) {
+            putString(Long.toString(value));
+            return;
+        }
+        ensureRemaining(digits.length);
+        if (value < 0) {
+            buffer.put((byte) '-');
+            value = -value;
+        }
+        int pos = digits.length;
+        do {
+            digits[--pos] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        buffer.put(digits, pos, digits.length - pos);
+    }
+
+    private void putByte(byte value) throws IOException {
+        ensureRemaining(1);
+        buffer.put(value);
+    }
+
+    private void putBytes(byte[] values) throws IOException {
+        ensureRemaining(values.length);
+        buffer.put(values);
+    }
+
+    private void ensureRemaining(int numBytes) throws IOException {
+        if (buffer.remaining() < numBytes)
+            flush();
+    }
+
+    /**
+     * Writes the buffer content to the channel. Blocks until the channel has
+     * accepted all of it.
+     */
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+        buffer.clear();
+    }
+}
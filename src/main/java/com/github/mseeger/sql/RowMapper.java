@@ -9,4 +9,17 @@ public interface RowMapper<T> {
      * @return Entity object corresponding to row
      */
     T map(ResultSet rs) throws SQLException;
+
+    /**
+     * Called by `QueryExecutor` once per result set, before the first row is
+     * mapped. Mappers which depend on the columns of the result set (see
+     * `EntityRowMapper`) return a mapper specialized to them, so that this
+     * work is not repeated for every row.
+     *
+     * @param rs Result set, whose rows are mapped next
+     * @return Mapper used for the rows of `rs`
+     */
+    default RowMapper<T> forResultSet(ResultSet rs) throws SQLException {
+        return this;
+    }
 }
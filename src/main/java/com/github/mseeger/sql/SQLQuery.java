@@ -5,8 +5,53 @@ import java.sql.PreparedStatement;
 import java.sql.SQLException;
 
 public abstract class SQLQuery {
+    private static final ClassValue<String> names = new ClassValue<>() {
+        @Override
+        protected String computeValue(Class<?> type) {
+            while ((type.isLocalClass() || type.isAnonymousClass()) && type.getEnclosingClass() != null)
+                type = type.getEnclosingClass();
+            return type.getSimpleName();
+        }
+    };
+
     protected abstract String getQueryString();
 
+    /**
+     * Name used to tag measurements of this query. Defaults to the simple
+     * name of the class, or of the enclosing class if the query is a local
+     * or anonymous class (e.g., "FilmsInStockQuery").
+     */
+    public String getName() {
+        return nameOf(getClass());
+    }
+
+    /**
+     * @param type Query class
+     * @return Default name for queries of class `type`, see `getName`
+     */
+    static String nameOf(Class<?> type) {
+        return names.get(type);
+    }
+
+    /**
+     * If true, the query may be sent to a read replica, see
+     * `ReplicaRoutingConnectionSource`. Replicas may lag behind the primary,
+     * so override this only for queries which tolerate slightly stale data.
+     * Defaults to false.
+     */
+    public boolean isReadOnly() {
+        return false;
+    }
+
+    /**
+     * Override this in order to fix how `QueryExecutor.run` fetches the
+     * result of this query, instead of the plan learned by `QueryProfiler`.
+     * Defaults to null, which uses the learned plan.
+     */
+    public FetchPlan getFetchPlan() {
+        return null;
+    }
+
     /**
      * If the query string contains slots "?", this method imputes values for
      * them.
@@ -17,13 +62,35 @@ public abstract class SQLQuery {
 
     /**
      * Creates prepared statement from query string and imputes values for
-     * free slots.
+     * free slots. If `connection` comes from a `ConnectionPool`, the
+     * statement is taken from the statement cache of the connection, so
+     * that the query string is prepared only once per connection. Closing
+     * the statement returns it to the cache. If imputing values fails, the
+     * statement is closed.
      *
      * @param connection Connection
      */
     public PreparedStatement getStatement(Connection connection) throws SQLException {
-        var statement = connection.prepareStatement(getQueryString());
-        imputeParameters(statement);
+        var statement = connection instanceof CachingConnection cachingConnection
+                ? cachingConnection.prepareCachedStatement(getQueryString())
+                : connection.prepareStatement(getQueryString());
+        try {
+            imputeParameters(statement);
+        } catch (SQLException | RuntimeException | Error e) {
+            closeAfterFailure(statement, e);
+            throw e;
+        }
         return statement;
     }
+
+    /**
+     * Closes `statement`, adding a failure to close as suppressed to `error`.
+     */
+    static void closeAfterFailure(PreparedStatement statement, Throwable error) {
+        try {
+            statement.close();
+        } catch (SQLException | RuntimeException e) {
+            error.addSuppressed(e);
+        }
+    }
 }
@@ -0,0 +1,101 @@
+package com.github.mseeger.sql;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Coalesces concurrent executions of the same query, keyed by `QueryKey`
+ * (query string and parameter values). The first caller runs the query,
+ * while callers arriving before it has finished wait for its result, and
+ * do not access the database. All of them receive the same immutable
+ * result list, or the same exception.
+ * <p>
+ * Results are not kept once the query has finished, so that, unlike with
+ * `QueryResultCache`, no caller receives a result which was computed before
+ * it called `run`.
+ *
+ * @param <T> Entity type
+ */
+public class SingleFlight<T> {
+    private final ConcurrentHashMap<QueryKey, CompletableFuture<List<T>>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder executions = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    /**
+     * Returns the result of `query`, either by calling `loader`, or by
+     * waiting for a concurrent call with the same key.
+     *
+     * @param query SQL query, used to compute the key
+     * @param loader Runs the query
+     * @return Result list, which cannot be modified
+     */
+    public List<T> run(SQLQuery query, QueryLoader<T> loader) throws SQLException {
+        var key = QueryKey.of(query);
+        var future = new CompletableFuture<List<T>>();
+        var existing = inFlight.putIfAbsent(key, future);
+        if (existing != null) {
+            coalesced.increment();
+            return await(existing);
+        }
+        executions.increment();
+        // The entry is removed before the future is completed, so that a
+        // caller arriving after completion runs the query again
+        List<T> result;
+        try {
+            result = List.copyOf(loader.load());
+        } catch (SQLException | RuntimeException | Error e) {
+            inFlight.remove(key, future);
+            future.completeExceptionally(e);
+            throw e;
+        }
+        inFlight.remove(key, future);
+        future.complete(result);
+        return result;
+    }
+
+    private static <U> List<U> await(CompletableFuture<List<U>> future) throws SQLException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for coalesced query", e);
+        } catch (ExecutionException e) {
+            switch (e.getCause()) {
+                case SQLException cause -> throw cause;
+                case RuntimeException cause -> throw cause;
+                case Error cause -> throw cause;
+                default -> throw new SQLException(e.getCause());
+            }
+        }
+    }
+
+    /**
+     * @return Number of queries currently running
+     */
+    public int getNumInFlight() {
+        return inFlight.size();
+    }
+
+    /**
+     * @return Counters since this object was created
+     */
+    public Statistics getStatistics() {
+        return new Statistics(executions.sum(), coalesced.sum());
+    }
+
+    /**
+     * @param executions Number of calls of `run` which called the loader
+     * @param coalesced Number of calls of `run` which waited for another
+     *                  call instead
+     */
+    public record Statistics(long executions, long coalesced) {
+        public double coalescedRate() {
+            long total = executions + coalesced;
+            return total == 0 ? 0 : (double) coalesced / total;
+        }
+    }
+}
@@ -0,0 +1,506 @@
+package com.github.mseeger.sql;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+/**
+ * Records queries which take longer than a threshold, see
+ * `QueryExecutor.setSlowQueryLog`. Queries which fail after the threshold
+ * are recorded as well, together with the error. For each of them, the
+ * query string and the parameter values bound by `imputeParameters` are
+ * recorded, and `EXPLAIN FORMAT=JSON` is run for the query on a separate
+ * connection, on a background thread. Plans with full table scans,
+ * temporary tables or filesort are flagged (see `PlanFlag`).
+ * <p>
+ * The log is rate-limited, so that it does not add load while the database
+ * is slow anyway: at most `maxEntriesPerMinute` slow queries are recorded,
+ * further ones are only counted. At most one EXPLAIN runs at a time, with
+ * at most one more waiting, and each query string is explained at most once
+ * per `explainInterval`.
+ */
+public class SlowQueryLog implements QueryListener, AutoCloseable {
+    public static final Duration defaultThreshold = Duration.ofMillis(500);
+    public static final int defaultMaxEntriesPerMinute = 10;
+    public static final int defaultMaxEntries = 100;
+    public static final Duration defaultExplainInterval = Duration.ofMinutes(10);
+    public static final int explainTimeoutSeconds = 10;
+
+    private static final Pattern fullTableScan = Pattern.compile(
+            "\"table_name\"\\s*:\\s*\"([^\"]*)\"\\s*,\\s*\"access_type\"\\s*:\\s*\"ALL\""
+    );
+    private static final Pattern accessTypeAll = Pattern.compile("\"access_type\"\\s*:\\s*\"ALL\"");
+    private static final Pattern temporaryTable = Pattern.compile("\"using_temporary_table\"\\s*:\\s*true");
+    private static final Pattern filesort = Pattern.compile("\"using_filesort\"\\s*:\\s*true");
+
+    private final ConnectionSource explainSource;
+    private final boolean ownsExplainSource;
+    private final long thresholdNanos;
+    private final int maxEntriesPerMinute;
+    private final int maxEntries;
+    private final long explainIntervalNanos;
+    private final ArrayDeque<Entry> entries = new ArrayDeque<>();
+    // Token bucket for recording entries
+    private double tokens;
+    private long lastRefill = System.nanoTime();
+    private final LongAdder numSuppressed = new LongAdder();
+    private final LongAdder numExplainsSkipped = new LongAdder();
+    // Maps query strings to time of last EXPLAIN
+    private final ConcurrentHashMap<String, Long> lastExplained = new ConcurrentHashMap<>();
+    private final ThreadPoolExecutor explainExecutor;
+    // Only used on the thread of `explainExecutor`
+    private Connection explainConnection = null;
+    private volatile Consumer<Entry> handler = null;
+
+    /**
+     * @param explainSource Connections for EXPLAIN are taken from here, and
+     *                      kept open. Should not be the pool used for
+     *                      queries. If null, no EXPLAIN is run
+     * @param threshold Queries taking longer than this are recorded
+     * @param maxEntriesPerMinute Maximum rate of recorded entries
+     * @param maxEntries Maximum number of entries kept, older ones are
+     *                   dropped
+     * @param explainInterval Minimum time between two EXPLAIN for the same
+     *                        query string
+     */
+    public SlowQueryLog(
+            ConnectionSource explainSource,
+            Duration threshold,
+            int maxEntriesPerMinute,
+            int maxEntries,
+            Duration explainInterval
+    ) {
+        this(explainSource, false, threshold, maxEntriesPerMinute, maxEntries, explainInterval);
+    }
+
+    public SlowQueryLog(ConnectionSource explainSource, Duration threshold) {
+        this(explainSource, threshold, defaultMaxEntriesPerMinute, defaultMaxEntries, defaultExplainInterval);
+    }
+
+    /**
+     * EXPLAIN is run on a connection to `connectionConfig`, which is not
+     * pooled, and closed by `close`.
+     *
+     * @param connectionConfig Configuration of database
+     * @param threshold Queries taking longer than this are recorded
+     */
+    public SlowQueryLog(ConnectionConfig connectionConfig, Duration threshold) {
+        this(
+                new DriverManagerConnectionSource(connectionConfig),
+                true,
+                threshold,
+                defaultMaxEntriesPerMinute,
+                defaultMaxEntries,
+                defaultExplainInterval
+        );
+    }
+
+    private SlowQueryLog(
+            ConnectionSource explainSource,
+            boolean ownsExplainSource,
+            Duration threshold,
+            int maxEntriesPerMinute,
+            int maxEntries,
+            Duration explainInterval
+    ) {
+        if (maxEntriesPerMinute < 1)
+            throw new IllegalArgumentException("maxEntriesPerMinute = " + maxEntriesPerMinute + ", must be positive");
+        if (maxEntries < 1)
+            throw new IllegalArgumentException("maxEntries = " + maxEntries + ", must be positive");
+        this.explainSource = explainSource;
+        this.ownsExplainSource = ownsExplainSource;
+        this.thresholdNanos = threshold.toNanos();
+        this.maxEntriesPerMinute = maxEntriesPerMinute;
+        this.maxEntries = maxEntries;
+        this.explainIntervalNanos = explainInterval.toNanos();
+        this.tokens = maxEntriesPerMinute;
+        this.explainExecutor = new ThreadPoolExecutor(
+                1, 1, 0, TimeUnit.NANOSECONDS,
+                new ArrayBlockingQueue<>(1),
+                runnable -> {
+                    var thread = new Thread(runnable, "slow-query-explain");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+        );
+    }
+
+    /**
+     * Plan properties which often explain slow queries.
+     */
+    public enum PlanFlag {
+        /**
+         * A table is read completely (access type "ALL")
+         */
+        FULL_TABLE_SCAN,
+        /**
+         * An internal temporary table is created
+         */
+        TEMPORARY_TABLE,
+        /**
+         * Rows are sorted without an index
+         */
+        FILESORT
+    }
+
+    @Override
+    public void onSuccess(QueryMetrics metrics) {
+        record(metrics, null);
+    }
+
+    @Override
+    public void onError(QueryMetrics metrics, QueryPhase phase, Exception error) {
+        record(metrics, error);
+    }
+
+    private void record(QueryMetrics metrics, Exception error) {
+        long totalNanos = metrics.totalNanos();
+        if (totalNanos < thresholdNanos)
+            return;
+        if (!tryAcquire()) {
+            numSuppressed.increment();
+            return;
+        }
+        var query = metrics.query();
+        List<Object> parameters;
+        try {
+            parameters = Collections.unmodifiableList(QueryKey.recordParameters(query));
+        } catch (SQLException | RuntimeException _) {
+            // Queries whose `imputeParameters` does more than setting values
+            parameters = null;
+        }
+        var entry = new Entry(
+                Instant.now(),
+                query.getName(),
+                query.getQueryString(),
+                parameters,
+                Duration.ofNanos(totalNanos),
+                metrics.numRows(),
+                error == null ? null : error.toString()
+        );
+        synchronized (entries) {
+            if (entries.size() == maxEntries)
+                entries.removeFirst();
+            entries.addLast(entry);
+        }
+        long now = System.nanoTime();
+        if (explainSource != null && parameters != null && shouldExplain(entry.getQueryString(), now)) {
+            try {
+                explainExecutor.execute(() -> {
+                    explain(entry);
+                    notifyHandler(entry);
+                });
+            } catch (RejectedExecutionException _) {
+                // Not explained, so the next slow execution may try again
+                lastExplained.remove(entry.getQueryString(), now);
+                numExplainsSkipped.increment();
+                notifyHandler(entry);
+            }
+        } else {
+            notifyHandler(entry);
+        }
+    }
+
+    private synchronized boolean tryAcquire() {
+        long now = System.nanoTime();
+        tokens = Math.min(maxEntriesPerMinute, tokens + (now - lastRefill) * maxEntriesPerMinute / 60e9);
+        lastRefill = now;
+        if (tokens < 1)
+            return false;
+        tokens -= 1;
+        return true;
+    }
+
+    /**
+     * Records `now` as time of the last EXPLAIN for `queryString`, unless
+     * it has been explained within `explainInterval`.
+     */
+    private boolean shouldExplain(String queryString, long now) {
+        var previous = lastExplained.get(queryString);
+        if (previous != null && now - previous < explainIntervalNanos)
+            return false;
+        // Only one of concurrent callers wins
+        return previous == null
+                ? lastExplained.putIfAbsent(queryString, now) == null
+                : lastExplained.replace(queryString, previous, now);
+    }
+
+    /**
+     * Runs on the thread of `explainExecutor`.
+     */
+    private void explain(Entry entry) {
+        try {
+            if (explainConnection == null || explainConnection.isClosed())
+                explainConnection = explainSource.getConnection();
+            try (var statement = explainConnection.prepareStatement(
+                    "EXPLAIN FORMAT=JSON " + entry.getQueryString()
+            )) {
+                statement.setQueryTimeout(explainTimeoutSeconds);
+                var parameters = entry.getParameters();
+                for (int i = 0; i < parameters.size(); i++) {
+                    var value = parameters.get(i);
+                    if (value == null)
+                        statement.setNull(i + 1, Types.NULL);
+                    else
+                        statement.setObject(i + 1, value);
+                }
+                try (var resultSet = statement.executeQuery()) {
+                    if (resultSet.next()) {
+                        var plan = resultSet.getString(1);
+                        entry.setPlan(plan, analyzePlan(plan));
+                    }
+                }
+            }
+        } catch (SQLException | RuntimeException e) {
+            entry.setExplainError(e.toString());
+            closeExplainConnection();
+        }
+    }
+
+    private void closeExplainConnection() {
+        try (var _ = explainConnection) {
+            explainConnection = null;
+        } catch (SQLException _) {}
+    }
+
+    /**
+     * Looks for plan properties in the JSON output of MySQL's
+     * `EXPLAIN FORMAT=JSON`.
+     *
+     * @param plan JSON plan
+     * @return Flags found in `plan`
+     */
+    static Set<PlanFlag> analyzePlan(String plan) {
+        var flags = EnumSet.noneOf(PlanFlag.class);
+        if (accessTypeAll.matcher(plan).find())
+            flags.add(PlanFlag.FULL_TABLE_SCAN);
+        if (temporaryTable.matcher(plan).find())
+            flags.add(PlanFlag.TEMPORARY_TABLE);
+        if (filesort.matcher(plan).find())
+            flags.add(PlanFlag.FILESORT);
+        return Collections.unmodifiableSet(flags);
+    }
+
+    /**
+     * @param plan JSON plan
+     * @return Names of tables which are scanned completely
+     */
+    static List<String> fullyScannedTables(String plan) {
+        var tables = new ArrayList<String>();
+        var matcher = fullTableScan.matcher(plan);
+        while (matcher.find())
+            tables.add(matcher.group(1));
+        return tables;
+    }
+
+    private void notifyHandler(Entry entry) {
+        var handler = this.handler;
+        if (handler != null)
+            handler.accept(entry);
+    }
+
+    /**
+     * Sets a handler which is called for every recorded entry, after EXPLAIN
+     * has completed (or has been skipped). It may be called on a background
+     * thread.
+     *
+     * @param handler Handler, for example writing entries to a log, or null
+     */
+    public void setHandler(Consumer<Entry> handler) {
+        this.handler = handler;
+    }
+
+    /**
+     * @return Recorded entries, oldest first. EXPLAIN may still be running
+     * for the latest ones
+     */
+    public List<Entry> getEntries() {
+        synchronized (entries) {
+            return List.copyOf(entries);
+        }
+    }
+
+    /**
+     * @return Number of slow queries not recorded due to rate limiting
+     */
+    public long getNumSuppressed() {
+        return numSuppressed.sum();
+    }
+
+    /**
+     * @return Number of EXPLAIN skipped since others were still running, or
+     * the log was closed
+     */
+    public long getNumExplainsSkipped() {
+        return numExplainsSkipped.sum();
+    }
+
+    public Duration getThreshold() {
+        return Duration.ofNanos(thresholdNanos);
+    }
+
+    /**
+     * Stops running EXPLAIN, and closes the EXPLAIN connection. Waits for a
+     * running EXPLAIN to complete.
+     */
+    @Override
+    public void close() throws SQLException {
+        explainExecutor.shutdownNow();
+        try {
+            explainExecutor.awaitTermination(explainTimeoutSeconds, TimeUnit.SECONDS);
+        } catch (InterruptedException _) {
+            Thread.currentThread().interrupt();
+        }
+        try (var _ = explainConnection) {
+            explainConnection = null;
+            if (ownsExplainSource)
+                explainSource.close();
+        }
+    }
+
+    /**
+     * A query which took longer than the threshold. The plan is set once
+     * EXPLAIN has completed.
+     */
+    public static final class Entry {
+        private final Instant time;
+        private final String queryName;
+        private final String queryString;
+        private final List<Object> parameters;
+        private final Duration latency;
+        private final long numRows;
+        private final String error;
+        private volatile String plan = null;
+        private volatile Set<PlanFlag> flags = Set.of();
+        private volatile String explainError = null;
+
+        private Entry(
+                Instant time,
+                String queryName,
+                String queryString,
+                List<Object> parameters,
+                Duration latency,
+                long numRows,
+                String error
+        ) {
+            this.time = time;
+            this.queryName = queryName;
+            this.queryString = queryString;
+            this.parameters = parameters;
+            this.latency = latency;
+            this.numRows = numRows;
+            this.error = error;
+        }
+
+        private void setPlan(String plan, Set<PlanFlag> flags) {
+            this.flags = flags;
+            this.plan = plan;
+        }
+
+        private void setExplainError(String explainError) {
+            this.explainError = explainError;
+        }
+
+        /**
+         * @return When the query completed
+         */
+        public Instant getTime() {
+            return time;
+        }
+
+        public String getQueryName() {
+            return queryName;
+        }
+
+        public String getQueryString() {
+            return queryString;
+        }
+
+        /**
+         * @return Parameter values, entry `i - 1` for slot `i`. Null if they
+         * could not be recorded
+         */
+        public List<Object> getParameters() {
+            return parameters;
+        }
+
+        public Duration getLatency() {
+            return latency;
+        }
+
+        /**
+         * @return Number of rows, for a failed query the ones processed
+         * before the error
+         */
+        public long getNumRows() {
+            return numRows;
+        }
+
+        /**
+         * @return Error of the query, or null if it succeeded
+         */
+        public String getError() {
+            return error;
+        }
+
+        /**
+         * @return JSON plan, or null if EXPLAIN has not completed or was
+         * skipped
+         */
+        public String getPlan() {
+            return plan;
+        }
+
+        /**
+         * @return Flags found in the plan, empty if there is no plan
+         */
+        public Set<PlanFlag> getFlags() {
+            return flags;
+        }
+
+        /**
+         * @return Names of tables scanned completely, according to the plan
+         */
+        public List<String> getFullyScannedTables() {
+            var plan = this.plan;
+            return plan == null ? List.of() : fullyScannedTables(plan);
+        }
+
+        /**
+         * @return Error of EXPLAIN, or null
+         */
+        public String getExplainError() {
+            return explainError;
+        }
+
+        @Override
+        public String toString() {
+            return "SlowQuery{time=" + time
+                    + ", name=" + queryName
+                    + ", latency=" + latency
+                    + ", numRows=" + numRows
+                    + (error == null ? "" : ", error=" + error)
+                    + ", parameters=" + parameters
+                    + ", flags=" + flags
+                    + ", fullyScannedTables=" + getFullyScannedTables()
+                    + (explainError == null ? "" : ", explainError=" + explainError)
+                    + "}";
+        }
+    }
+}
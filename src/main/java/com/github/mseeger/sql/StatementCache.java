@@ -0,0 +1,144 @@
+package com.github.mseeger.sql;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded LRU cache of prepared statements for a single physical connection,
+ * keyed by query string. Not thread-safe, since a connection is used by one
+ * thread at a time.
+ * <p>
+ * Statements handed out by `prepare` are proxies. Closing them clears their
+ * parameters, resets fetch size, row limit and query timeout, and returns
+ * them to the cache. Statements evicted from the cache
+ * are closed, or when they are in use, once they are returned.
+ */
+class StatementCache {
+    private final Connection connection;
+    private final LinkedHashMap<String, CachedStatement> statements;
+
+    /**
+     * @param connection Physical connection
+     * @param maxSize Maximum number of cached statements
+     */
+    StatementCache(Connection connection, int maxSize) {
+        this.connection = connection;
+        this.statements = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedStatement> eldest) {
+                if (size() > maxSize) {
+                    eldest.getValue().evict();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns cached statement for `queryString`, or prepares a new one. If
+     * the cached statement is in use already (e.g., the same query is run
+     * while iterating over its results), an uncached statement is returned.
+     *
+     * @param queryString Query string
+     * @return Prepared statement, without parameters set
+     */
+    PreparedStatement prepare(String queryString) throws SQLException {
+        var cached = statements.get(queryString);
+        if (cached == null) {
+            cached = new CachedStatement(connection.prepareStatement(queryString));
+            statements.put(queryString, cached);
+        } else if (cached.inUse) {
+            return connection.prepareStatement(queryString);
+        }
+        cached.inUse = true;
+        return cached.proxy;
+    }
+
+    /**
+     * Closes all cached statements which are not in use.
+     */
+    void clear() {
+        for (var cached : statements.values())
+            cached.evict();
+        statements.clear();
+    }
+
+    private static class CachedStatement implements InvocationHandler {
+        private final PreparedStatement statement;
+        private final PreparedStatement proxy;
+        private boolean inUse = false;
+        private boolean evicted = false;
+        // Has the caller changed fetch size, row limit or query timeout?
+        private boolean settingsChanged = false;
+
+        private CachedStatement(PreparedStatement statement) {
+            this.statement = statement;
+            this.proxy = (PreparedStatement) Proxy.newProxyInstance(
+                    PreparedStatement.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class},
+                    this
+            );
+        }
+
+        private void evict() {
+            evicted = true;
+            if (!inUse)
+                closeQuietly();
+        }
+
+        private void release() throws SQLException {
+            inUse = false;
+            if (evicted) {
+                closeQuietly();
+            } else {
+                statement.clearParameters();
+                if (settingsChanged) {
+                    statement.setFetchSize(0);
+                    statement.setMaxRows(0);
+                    statement.setQueryTimeout(0);
+                    settingsChanged = false;
+                }
+            }
+        }
+
+        private void closeQuietly() {
+            try {
+                statement.close();
+            } catch (SQLException _) {}
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (inUse)
+                        release();
+                    return null;
+                case "isClosed":
+                    return !inUse || statement.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "setFetchSize", "setMaxRows", "setLargeMaxRows", "setQueryTimeout":
+                    settingsChanged = true;
+                    break;
+            }
+            if (!inUse)
+                throw new SQLException("Statement has been returned to the cache");
+            try {
+                return method.invoke(statement, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.github.mseeger.sql;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks an entity class, for which a `RecordConverter` is generated at
+ * compile time (see `processor.TableEntityProcessor`). `TableFormatter`
+ * then accesses the fields of the entity by direct getter calls, instead of
+ * reflection.
+ * <p>
+ * The class must be public and top-level or static nested. Fields are
+ * determined from the getters "getXyz" as for `EntityToRecordConverter`,
+ * and a static `String[]` field `columnNames` determines the column order.
+ */
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.TYPE)
+public @interface TableEntity {}
@@ -1,17 +1,32 @@
 package com.github.mseeger.sql;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
 import java.util.function.Function;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 public class TableFormatter {
     public static final int spaceBetweenColumns = 2;
+    public static final int defaultSampleSize = 1000;
+    /**
+     * `asString` processes results with at least this many entities in
+     * parallel.
+     */
+    public static final int defaultParallelThreshold = 50000;
+    private static final int minParallelChunkSize = 1024;
+
+    private static final String spaces = " ".repeat(64);
 
     /**
      * Returns which contains a formatted table corresponding to the query
@@ -33,10 +48,36 @@ public class TableFormatter {
     public static String asString(
             ArrayList<?> queryResult,
             Map<String, String> formats
+    ) {
+        return asString(queryResult, formats, defaultParallelThreshold);
+    }
+
+    /**
+     * Same as `asString(ArrayList, Map)`. If `queryResult` has at least
+     * `parallelThreshold` entries, entities are converted and formatted in
+     * parallel on the common fork/join pool. Rows are split into chunks,
+     * column widths are computed per chunk and merged, and chunks are
+     * formatted independently and joined in order. The result is the same
+     * as with sequential processing.
+     *
+     * @param queryResult List of entities as returned by a query
+     * @param formats Maps column names to format strings. Defaults are used
+     *                for all other columns
+     * @param parallelThreshold Minimum size of `queryResult` for parallel
+     *                          processing. Use `Integer.MAX_VALUE` in order
+     *                          to switch it off
+     * @return Formatted table as string
+     */
+    public static String asString(
+            ArrayList<?> queryResult,
+            Map<String, String> formats,
+            int parallelThreshold
     ) {
         if (queryResult.isEmpty()) return "";
+        if (queryResult.size() >= parallelThreshold && ForkJoinPool.getCommonPoolParallelism() > 1)
+            return asStringParallel(queryResult, formats);
         Class<?> entityType = queryResult.getFirst().getClass();
-        var converter = new EntityToRecordConverter(entityType, formats);
+        var converter = EntityToRecordConverter.forEntityType(entityType, formats);
         String[] fieldNames = converter.getFieldNames();
         String[][] fieldValues = Stream.of(queryResult.toArray())
                 .map(converter::fieldValuesAsStrings)
@@ -59,10 +100,399 @@ public class TableFormatter {
         return header + body;
     }
 
+    private static String asStringParallel(
+            ArrayList<?> queryResult,
+            Map<String, String> formats
+    ) {
+        var converter = EntityToRecordConverter.forEntityType(queryResult.getFirst().getClass(), formats);
+        String[] fieldNames = converter.getFieldNames();
+        int numRows = queryResult.size();
+        int chunkSize = Math.max(
+                minParallelChunkSize,
+                numRows / (8 * ForkJoinPool.getCommonPoolParallelism())
+        );
+        int numChunks = (numRows + chunkSize - 1) / chunkSize;
+        var fieldValues = new String[numRows][];
+        int[] columnWidths = new ConvertTask(
+                queryResult, converter, fieldValues, chunkSize, 0, numChunks
+        ).invoke();
+        maxLengths(columnWidths, fieldNames);
+        var chunks = new StringBuilder[numChunks];
+        new FormatTask(fieldValues, columnWidths, chunks, chunkSize, 0, numChunks).invoke();
+        var header = new StringBuilder();
+        try {
+            writeHeader(header, fieldNames, columnWidths);
+        } catch (IOException e) {
+            // Cannot happen for `StringBuilder`
+            throw new UncheckedIOException(e);
+        }
+        long length = header.length() + numChunks - 1;
+        for (var chunk : chunks)
+            length += chunk.length();
+        var out = new StringBuilder((int) Math.min(length, Integer.MAX_VALUE - 8));
+        out.append(header);
+        for (int i = 0; i < numChunks; i++) {
+            if (i > 0) out.append('\n');
+            out.append(chunks[i]);
+            // Chunk can be garbage collected
+            chunks[i] = null;
+        }
+        return out.toString();
+    }
+
+    /**
+     * Converts rows of chunks `[firstChunk, lastChunk)` into `fieldValues`,
+     * and returns maximum value lengths per column.
+     */
+    private static class ConvertTask extends RecursiveTask<int[]> {
+        private final ArrayList<?> entities;
+        private final EntityToRecordConverter converter;
+        private final String[][] fieldValues;
+        private final int chunkSize;
+        private final int firstChunk;
+        private final int lastChunk;
+
+        ConvertTask(
+                ArrayList<?> entities,
+                EntityToRecordConverter converter,
+                String[][] fieldValues,
+                int chunkSize,
+                int firstChunk,
+                int lastChunk
+        ) {
+            this.entities = entities;
+            this.converter = converter;
+            this.fieldValues = fieldValues;
+            this.chunkSize = chunkSize;
+            this.firstChunk = firstChunk;
+            this.lastChunk = lastChunk;
+        }
+
+        @Override
+        protected int[] compute() {
+            if (lastChunk - firstChunk == 1) {
+                int[] maxLengths = null;
+                int end = Math.min(lastChunk * chunkSize, fieldValues.length);
+                for (int i = firstChunk * chunkSize; i < end; i++) {
+                    var values = converter.fieldValuesAsStrings(entities.get(i));
+                    fieldValues[i] = values;
+                    if (maxLengths == null)
+                        maxLengths = new int[values.length];
+                    maxLengths(maxLengths, values);
+                }
+                return maxLengths;
+            }
+            int middle = (firstChunk + lastChunk) >>> 1;
+            var left = new ConvertTask(entities, converter, fieldValues, chunkSize, firstChunk, middle);
+            left.fork();
+            int[] maxLengths = new ConvertTask(
+                    entities, converter, fieldValues, chunkSize, middle, lastChunk
+            ).compute();
+            int[] leftMaxLengths = left.join();
+            for (int j = 0; j < maxLengths.length; j++)
+                maxLengths[j] = Math.max(maxLengths[j], leftMaxLengths[j]);
+            return maxLengths;
+        }
+    }
+
+    /**
+     * Formats rows of chunks `[firstChunk, lastChunk)` into `chunks`.
+     */
+    private static class FormatTask extends RecursiveAction {
+        private final String[][] fieldValues;
+        private final int[] columnWidths;
+        private final StringBuilder[] chunks;
+        private final int chunkSize;
+        private final int firstChunk;
+        private final int lastChunk;
+
+        FormatTask(
+                String[][] fieldValues,
+                int[] columnWidths,
+                StringBuilder[] chunks,
+                int chunkSize,
+                int firstChunk,
+                int lastChunk
+        ) {
+            this.fieldValues = fieldValues;
+            this.columnWidths = columnWidths;
+            this.chunks = chunks;
+            this.chunkSize = chunkSize;
+            this.firstChunk = firstChunk;
+            this.lastChunk = lastChunk;
+        }
+
+        @Override
+        protected void compute() {
+            if (lastChunk - firstChunk == 1) {
+                int start = firstChunk * chunkSize;
+                int end = Math.min(start + chunkSize, fieldValues.length);
+                int rowWidth = IntStream.of(columnWidths).sum()
+                        + spaceBetweenColumns * (columnWidths.length - 1);
+                var out = new StringBuilder((rowWidth + 1) * (end - start));
+                try {
+                    for (int i = start; i < end; i++) {
+                        if (i > start) out.append('\n');
+                        writeRow(out, fieldValues[i], columnWidths);
+                        // Row can be garbage collected
+                        fieldValues[i] = null;
+                    }
+                } catch (IOException e) {
+                    // Cannot happen for `StringBuilder`
+                    throw new UncheckedIOException(e);
+                }
+                chunks[firstChunk] = out;
+                return;
+            }
+            int middle = (firstChunk + lastChunk) >>> 1;
+            invokeAll(
+                    new FormatTask(fieldValues, columnWidths, chunks, chunkSize, firstChunk, middle),
+                    new FormatTask(fieldValues, columnWidths, chunks, chunkSize, middle, lastChunk)
+            );
+        }
+    }
+
     public static String asString(ArrayList<?> queryResult) {
         return asString(queryResult, new HashMap<>());
     }
 
+    /**
+     * Writes the same table as `asString` to `out`, row by row. Column widths
+     * are determined in a first pass over `entities`, so that entity objects
+     * are converted to strings twice, but the table is never held in memory.
+     * <br>
+     * If `out` is a `Writer`, it should be buffered.
+     *
+     * @param out Table is written here
+     * @param entities Entities, iterated over exactly twice. Both passes
+     *                 must return the same entities
+     * @param formats Maps column names to format strings. Defaults are used
+     *                for all other columns
+     */
+    public static void write(
+            Appendable out,
+            Iterable<?> entities,
+            Map<String, String> formats
+    ) throws IOException {
+        EntityToRecordConverter converter = null;
+        String[] fieldNames = null;
+        int[] columnWidths = null;
+        for (var entity : entities) {
+            if (converter == null) {
+                converter = EntityToRecordConverter.forEntityType(entity.getClass(), formats);
+                fieldNames = converter.getFieldNames();
+                columnWidths = lengths(fieldNames);
+            }
+            maxLengths(columnWidths, converter.fieldValuesAsStrings(entity));
+        }
+        if (converter == null) return;
+        writeHeader(out, fieldNames, columnWidths);
+        boolean firstRow = true;
+        for (var entity : entities) {
+            if (!firstRow) out.append('\n');
+            writeRow(out, converter.fieldValuesAsStrings(entity), columnWidths);
+            firstRow = false;
+        }
+    }
+
+    public static void write(Appendable out, Iterable<?> entities) throws IOException {
+        write(out, entities, new HashMap<>());
+    }
+
+    /**
+     * Writes a table as `asString` to `out`, row by row, making a single pass
+     * over `entities`. Column widths are determined from the first
+     * `sampleSize` entities, which are buffered. Values of later entities
+     * which are longer than the column width are truncated.
+     * <br>
+     * If `out` is a `Writer`, it should be buffered.
+     *
+     * @param out Table is written here
+     * @param entities Entities
+     * @param formats Maps column names to format strings. Defaults are used
+     *                for all other columns
+     * @param sampleSize Number of entities used to determine column widths
+     */
+    public static void write(
+            Appendable out,
+            Iterator<?> entities,
+            Map<String, String> formats,
+            int sampleSize
+    ) throws IOException {
+        if (!entities.hasNext()) return;
+        var first = entities.next();
+        var converter = EntityToRecordConverter.forEntityType(first.getClass(), formats);
+        String[] fieldNames = converter.getFieldNames();
+        int[] columnWidths = lengths(fieldNames);
+        var sample = new ArrayList<String[]>();
+        sample.add(converter.fieldValuesAsStrings(first));
+        while (sample.size() < sampleSize && entities.hasNext())
+            sample.add(converter.fieldValuesAsStrings(entities.next()));
+        for (var values : sample)
+            maxLengths(columnWidths, values);
+        writeHeader(out, fieldNames, columnWidths);
+        boolean firstRow = true;
+        for (var values : sample) {
+            if (!firstRow) out.append('\n');
+            writeRow(out, values, columnWidths);
+            firstRow = false;
+        }
+        // Sample can be garbage collected while the remaining rows are written
+        sample = null;
+        while (entities.hasNext()) {
+            out.append('\n');
+            writeRow(out, converter.fieldValuesAsStrings(entities.next()), columnWidths);
+        }
+    }
+
+    /**
+     * See `write(Appendable, Iterator, Map, int)`. The stream is not closed
+     * here.
+     */
+    public static void write(
+            Appendable out,
+            Stream<?> entities,
+            Map<String, String> formats,
+            int sampleSize
+    ) throws IOException {
+        write(out, entities.iterator(), formats, sampleSize);
+    }
+
+    public static void write(Appendable out, Stream<?> entities) throws IOException {
+        write(out, entities, new HashMap<>(), defaultSampleSize);
+    }
+
+    /**
+     * Returns a formatted table for a columnar query result, in the same
+     * format as `asString(ArrayList, Map)`. Columns are named by their
+     * labels in the query. NULL values are shown as "null".
+     *
+     * @param queryResult Columnar query result
+     * @param formats Maps column names to format strings. Defaults are used
+     *                for all other columns
+     * @return Formatted table as string
+     */
+    public static String asString(ColumnarResult queryResult, Map<String, String> formats) {
+        var out = new StringBuilder();
+        try {
+            write(out, queryResult, formats);
+        } catch (IOException e) {
+            // Cannot happen for `StringBuilder`
+            throw new UncheckedIOException(e);
+        }
+        return out.toString();
+    }
+
+    public static String asString(ColumnarResult queryResult) {
+        return asString(queryResult, new HashMap<>());
+    }
+
+    /**
+     * Writes the same table as `asString(ColumnarResult, Map)` to `out`, row
+     * by row.
+     *
+     * @param out Table is written here
+     * @param queryResult Columnar query result
+     * @param formats Maps column names to format strings. Defaults are used
+     *                for all other columns
+     */
+    public static void write(
+            Appendable out,
+            ColumnarResult queryResult,
+            Map<String, String> formats
+    ) throws IOException {
+        int numRows = queryResult.getNumRows();
+        if (numRows == 0) return;
+        String[] columnNames = queryResult.getColumnNames();
+        var converters = new EntryToStringConverter[columnNames.length];
+        for (int j = 0; j < columnNames.length; j++) {
+            var format = formats.get(columnNames[j]);
+            if (format == null && queryResult.getColumnType(j) == ColumnarResult.ColumnType.DOUBLE)
+                format = FormatEntryToStringConverter.defaultFormat;
+            converters[j] = format == null
+                    ? new DefaultEntryToStringConverter()
+                    : new FormatEntryToStringConverter(format);
+        }
+        int[] columnWidths = lengths(columnNames);
+        var values = new String[columnNames.length];
+        for (int i = 0; i < numRows; i++) {
+            columnValues(queryResult, i, converters, values);
+            maxLengths(columnWidths, values);
+        }
+        writeHeader(out, columnNames, columnWidths);
+        for (int i = 0; i < numRows; i++) {
+            if (i > 0) out.append('\n');
+            columnValues(queryResult, i, converters, values);
+            writeRow(out, values, columnWidths);
+        }
+    }
+
+    private static void columnValues(
+            ColumnarResult queryResult,
+            int row,
+            EntryToStringConverter[] converters,
+            String[] values
+    ) {
+        for (int j = 0; j < values.length; j++)
+            values[j] = queryResult.valueAsString(row, j, converters[j]);
+    }
+
+    private static int[] lengths(String[] values) {
+        var lengths = new int[values.length];
+        for (int i = 0; i < values.length; i++)
+            lengths[i] = values[i].length();
+        return lengths;
+    }
+
+    private static void maxLengths(int[] maxLengths, String[] values) {
+        for (int i = 0; i < maxLengths.length; i++)
+            maxLengths[i] = Math.max(maxLengths[i], values[i].length());
+    }
+
+    private static void writeHeader(
+            Appendable out,
+            String[] fieldNames,
+            int[] columnWidths
+    ) throws IOException {
+        writeRow(out, fieldNames, columnWidths);
+        out.append('\n');
+        int rowWidth = IntStream.of(columnWidths).sum()
+                + spaceBetweenColumns * (columnWidths.length - 1);
+        for (int i = 0; i < rowWidth; i++)
+            out.append('-');
+        out.append('\n');
+    }
+
+    /**
+     * Writes values right-aligned to their column widths, as "%{width}s"
+     * does. Values longer than the column width are truncated.
+     */
+    private static void writeRow(
+            Appendable out,
+            String[] values,
+            int[] columnWidths
+    ) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) appendSpaces(out, spaceBetweenColumns);
+            var value = values[i];
+            int width = columnWidths[i];
+            if (value.length() > width) {
+                out.append(value, 0, width);
+            } else {
+                appendSpaces(out, width - value.length());
+                out.append(value);
+            }
+        }
+    }
+
+    private static void appendSpaces(Appendable out, int num) throws IOException {
+        while (num > 0) {
+            int len = Math.min(num, spaces.length());
+            out.append(spaces, 0, len);
+            num -= len;
+        }
+    }
+
     private static int[] getColumnWidths(
             String[] fieldNames,
             String[][] fieldValues
@@ -0,0 +1,18 @@
+package com.github.mseeger.sql;
+
+import java.sql.SQLException;
+
+/**
+ * Wraps an `SQLException` thrown where only unchecked exceptions are allowed,
+ * for example while consuming a stream returned by `QueryExecutor.stream`.
+ */
+public class UncheckedSQLException extends RuntimeException {
+    public UncheckedSQLException(SQLException cause) {
+        super(cause);
+    }
+
+    @Override
+    public SQLException getCause() {
+        return (SQLException) super.getCause();
+    }
+}
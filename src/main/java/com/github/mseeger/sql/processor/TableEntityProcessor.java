@@ -0,0 +1,242 @@
+package com.github.mseeger.sql.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Generates a `RecordConverter` named "{Entity}RecordConverter" for every
+ * class annotated by `TableEntity`, in the package of the entity class, and
+ * registers all of them in
+ * "META-INF/services/com.github.mseeger.sql.RecordConverter".
+ * <p>
+ * Fields are the declared non-static methods "getXyz" without parameters,
+ * as for `EntityToRecordConverter`. The generated code calls the getters
+ * directly, and reads the `columnNames` field directly if it exists.
+ * Values of `int`, `long` and `double` getters are passed to the primitive
+ * overloads of `EntryToStringConverter`, so that they are not boxed.
+ */
+@SupportedAnnotationTypes(TableEntityProcessor.annotationName)
+public class TableEntityProcessor extends AbstractProcessor {
+    static final String annotationName = "com.github.mseeger.sql.TableEntity";
+    private static final String converterInterface = "com.github.mseeger.sql.RecordConverter";
+    private static final String entryConverterInterface = "com.github.mseeger.sql.EntryToStringConverter";
+    private static final String converterSuffix = "RecordConverter";
+
+    // Names of converters generated in all rounds
+    private final Set<String> generatedConverters = new TreeSet<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        if (roundEnv.processingOver()) {
+            if (!generatedConverters.isEmpty())
+                writeServiceFile();
+            return false;
+        }
+        var annotation = processingEnv.getElementUtils().getTypeElement(annotationName);
+        if (annotation == null)
+            return false;
+        for (var element : roundEnv.getElementsAnnotatedWith(annotation)) {
+            if (checkEntity(element))
+                generateConverter((TypeElement) element);
+        }
+        return true;
+    }
+
+    private boolean checkEntity(Element element) {
+        if (element.getKind() != ElementKind.CLASS && element.getKind() != ElementKind.RECORD) {
+            error(element, "@TableEntity must be used on a class");
+            return false;
+        }
+        var type = (TypeElement) element;
+        boolean isNested = type.getNestingKind() == NestingKind.MEMBER;
+        if (!type.getModifiers().contains(Modifier.PUBLIC)
+                || (isNested && !type.getModifiers().contains(Modifier.STATIC))
+                || (type.getNestingKind() != NestingKind.TOP_LEVEL && !isNested)) {
+            error(element, "@TableEntity class must be public, and top-level or static nested");
+            return false;
+        }
+        return true;
+    }
+
+    private void generateConverter(TypeElement entity) {
+        var elementUtils = processingEnv.getElementUtils();
+        String packageName = elementUtils.getPackageOf(entity).getQualifiedName().toString();
+        String entityName = entity.getQualifiedName().toString();
+        String binaryName = elementUtils.getBinaryName(entity).toString();
+        String simpleBinaryName = packageName.isEmpty()
+                ? binaryName
+                : binaryName.substring(packageName.length() + 1);
+        String converterName = simpleBinaryName.replace('$', '_') + converterSuffix;
+        String qualifiedConverterName = packageName.isEmpty() ? converterName : packageName + "." + converterName;
+
+        var getters = new ArrayList<ExecutableElement>();
+        boolean hasColumnNames = false;
+        for (var member : entity.getEnclosedElements()) {
+            if (member.getKind() == ElementKind.METHOD) {
+                var method = (ExecutableElement) member;
+                String name = method.getSimpleName().toString();
+                if (name.startsWith("get") && name.length() > 3
+                        && method.getParameters().isEmpty()
+                        && !method.getModifiers().contains(Modifier.STATIC)) {
+                    if (method.getModifiers().contains(Modifier.PRIVATE)) {
+                        error(method, "Getter of @TableEntity class must not be private");
+                        return;
+                    }
+                    getters.add(method);
+                }
+            } else if (member.getKind() == ElementKind.FIELD && isColumnNamesField((VariableElement) member)) {
+                hasColumnNames = true;
+            }
+        }
+
+        try (var out = new PrintWriter(
+                processingEnv.getFiler().createSourceFile(qualifiedConverterName, entity).openWriter()
+        )) {
+            if (!packageName.isEmpty()) {
+                out.println("package " + packageName + ";");
+                out.println();
+            }
+            out.println("/**");
+            out.println(" * Generated by " + TableEntityProcessor.class.getSimpleName() + " for `" + simpleBinaryName.replace('$', '.') + "`.");
+            out.println(" */");
+            out.println("public final class " + converterName + " implements " + converterInterface + "<" + entityName + "> {");
+            out.println("    private static final String[] fieldNames = {" + joinQuoted(getters, true) + "};");
+            out.println("    private static final String[] getterNames = {" + joinQuoted(getters, false) + "};");
+            out.print("    private static final Class<?>[] fieldTypes = {");
+            for (int i = 0; i < getters.size(); i++) {
+                if (i > 0) out.print(", ");
+                out.print(typeLiteral(getters.get(i).getReturnType()) + ".class");
+            }
+            out.println("};");
+            out.println();
+            out.println("    @Override");
+            out.println("    public Class<" + entityName + "> getEntityType() {");
+            out.println("        return " + entityName + ".class;");
+            out.println("    }");
+            out.println();
+            out.println("    @Override");
+            out.println("    public String[] getFieldNames() {");
+            out.println("        return fieldNames.clone();");
+            out.println("    }");
+            out.println();
+            out.println("    @Override");
+            out.println("    public String[] getGetterNames() {");
+            out.println("        return getterNames.clone();");
+            out.println("    }");
+            out.println();
+            out.println("    @Override");
+            out.println("    public Class<?>[] getFieldTypes() {");
+            out.println("        return fieldTypes.clone();");
+            out.println("    }");
+            out.println();
+            out.println("    @Override");
+            out.println("    public String[] getColumnNames() {");
+            out.println("        return " + (hasColumnNames ? entityName + ".columnNames" : "null") + ";");
+            out.println("    }");
+            out.println();
+            out.println("    @Override");
+            out.println("    public String valueAsString(" + entityName + " entity, int index, "
+                    + entryConverterInterface + " converter) {");
+            out.println("        return switch (index) {");
+            for (int i = 0; i < getters.size(); i++) {
+                var getter = getters.get(i);
+                String call = "entity." + getter.getSimpleName() + "()";
+                out.println("            case " + i + " -> " + convertExpression(getter.getReturnType(), call) + ";");
+            }
+            out.println("            default -> throw new IndexOutOfBoundsException(\"index = \" + index);");
+            out.println("        };");
+            out.println("    }");
+            out.println("}");
+        } catch (IOException e) {
+            error(entity, "Cannot write " + qualifiedConverterName + ": " + e.getMessage());
+            return;
+        }
+        generatedConverters.add(qualifiedConverterName);
+    }
+
+    private static boolean isColumnNamesField(VariableElement field) {
+        var modifiers = field.getModifiers();
+        return field.getSimpleName().contentEquals("columnNames")
+                && modifiers.contains(Modifier.PUBLIC)
+                && modifiers.contains(Modifier.STATIC)
+                && field.asType() instanceof ArrayType arrayType
+                && arrayType.getComponentType().toString().equals("java.lang.String");
+    }
+
+    /**
+     * Field names are derived from getter names as in `EntityField`.
+     */
+    private static String joinQuoted(ArrayList<ExecutableElement> getters, boolean fieldNames) {
+        var result = new StringBuilder();
+        for (var getter : getters) {
+            String name = getter.getSimpleName().toString();
+            if (fieldNames)
+                name = name.substring(3, 4).toLowerCase() + name.substring(4);
+            if (!result.isEmpty()) result.append(", ");
+            result.append('"').append(name).append('"');
+        }
+        return result.toString();
+    }
+
+    /**
+     * Same dispatch as `EntityField.getValueAsString`, so that both paths
+     * convert values in the same way.
+     */
+    private static String convertExpression(TypeMirror type, String call) {
+        return switch (type.getKind()) {
+            case INT -> "converter.convertInt(" + call + ")";
+            case LONG -> "converter.convertLong(" + call + ")";
+            case DOUBLE -> "converter.convertDouble(" + call + ")";
+            default -> "converter.convert(" + call + ")";
+        };
+    }
+
+    private String typeLiteral(TypeMirror type) {
+        if (type.getKind() == TypeKind.DECLARED || type.getKind() == TypeKind.TYPEVAR)
+            return processingEnv.getTypeUtils().erasure(type).toString();
+        return type.toString();
+    }
+
+    private void writeServiceFile() {
+        try (var out = new PrintWriter(
+                processingEnv.getFiler().createResource(
+                        StandardLocation.CLASS_OUTPUT, "", "META-INF/services/" + converterInterface
+                ).openWriter()
+        )) {
+            for (var name : generatedConverters)
+                out.println(name);
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(
+                    Diagnostic.Kind.ERROR, "Cannot write service file: " + e.getMessage()
+            );
+        }
+    }
+
+    private void error(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+}
@@ -1,5 +1,10 @@
 package com.github.mseeger.sql.queries;
 
+import com.github.mseeger.sql.TableEntity;
+
+import java.util.Objects;
+
+@TableEntity
 public class FilmsInStock {
     public static final String[] columnNames = {
             "filmID",
@@ -29,6 +34,20 @@ public class FilmsInStock {
         return numInStock;
     }
 
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof FilmsInStock that)) return false;
+        return filmID == that.filmID
+                && numInStock == that.numInStock
+                && Objects.equals(title, that.title);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(filmID, title, numInStock);
+    }
+
     @Override
     public String toString() {
         return "FilmsInStock{" +
@@ -0,0 +1,337 @@
+package com.github.mseeger.sql.queries;
+
+import com.github.mseeger.sql.IntIntHashMap;
+import com.github.mseeger.sql.QueryExecutor;
+import com.github.mseeger.sql.RowMapper;
+import com.github.mseeger.sql.SQLQuery;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * In-memory view of the current stock, answering `FilmsInStockQuery` for
+ * "now" without accessing the database.
+ * <p>
+ * The view is bulk-loaded from `film`, `inventory` and `rental` by `load`,
+ * and then kept up to date by calling `onRental`, `onReturn` and
+ * `onInventoryAdded` whenever such events are written to the database.
+ * Events arriving while `load` runs are applied to the current content and
+ * also recorded, and are replayed onto the new content before it is swapped
+ * in. Replaying an event which is already contained in the loaded data has
+ * no effect. Queries for other reference times fall back to
+ * `FilmsInStockQuery`.
+ * <p>
+ * Per store, the number of items in stock is kept for each film in an
+ * `IntIntHashMap`. Lookups take time linear in the number of films of the
+ * store.
+ */
+public class FilmsInStockIndex {
+    private static final String filmQueryString = """
+            SELECT film_id, title
+              FROM film
+            """;
+    private static final String inventoryQueryString = """
+            SELECT inventory_id, store_id, film_id
+              FROM inventory
+            """;
+    private static final String openRentalsQueryString = """
+            SELECT inventory_id
+              FROM rental
+             WHERE rental_date <= ?
+               AND (return_date IS NULL OR return_date > ?)
+            """;
+    private static final RowMapper<int[]> idsRowMapper = resultSet -> {
+        int numColumns = resultSet.getMetaData().getColumnCount();
+        var ids = new int[numColumns];
+        for (int i = 0; i < numColumns; i++)
+            ids[i] = resultSet.getInt(i + 1);
+        return ids;
+    };
+
+    private final FilmsInStockQuery sqlQuery;
+    private final QueryExecutor<FilmsInStock> queryExecutor;
+    private final QueryExecutor<int[]> idsQueryExecutor;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final AtomicLong numMismatches = new AtomicLong();
+    private volatile boolean consistencyCheck = false;
+    // Guarded by `lock`
+    private State state = new State();
+    // Events since `load` started, null if it is not running. Guarded by
+    // `lock`
+    private ArrayList<Consumer<State>> pendingEvents = null;
+
+    /**
+     * @param queryExecutor Used for loading, and for queries which are not
+     *                      answered from memory
+     */
+    public FilmsInStockIndex(QueryExecutor<FilmsInStock> queryExecutor) {
+        this.queryExecutor = queryExecutor;
+        this.idsQueryExecutor = queryExecutor.forRowType(int[].class);
+        this.sqlQuery = new FilmsInStockQuery(queryExecutor);
+    }
+
+    /**
+     * Replaces the content of the view by loading films, inventory and
+     * rentals open at the current time from the database. Rows are streamed,
+     * so that no intermediate results are held in memory. The new content is
+     * built without holding the lock, so that queries are answered from the
+     * previous content until it is swapped in.
+     */
+    public synchronized void load() throws SQLException {
+        lock.writeLock().lock();
+        try {
+            pendingEvents = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        try {
+            var newState = loadState();
+            lock.writeLock().lock();
+            try {
+                for (var event : pendingEvents)
+                    event.accept(newState);
+                state = newState;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } finally {
+            lock.writeLock().lock();
+            try {
+                pendingEvents = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    private State loadState() throws SQLException {
+        var loadTime = Timestamp.valueOf(LocalDateTime.now());
+        var newState = new State();
+        queryExecutor.forEach(
+                query(filmQueryString, null),
+                resultSet -> new FilmsInStock(resultSet.getInt(1), resultSet.getString(2), 0),
+                film -> newState.setTitle(film.getFilmID(), film.getTitle())
+        );
+        idsQueryExecutor.forEach(
+                query(inventoryQueryString, null),
+                idsRowMapper,
+                ids -> newState.addInventory(ids[0], ids[1], ids[2])
+        );
+        idsQueryExecutor.forEach(
+                query(openRentalsQueryString, loadTime),
+                idsRowMapper,
+                ids -> newState.rent(ids[0])
+        );
+        return newState;
+    }
+
+    /**
+     * Records that inventory item `inventoryID` has been rented out.
+     */
+    public void onRental(int inventoryID) {
+        apply(target -> target.rent(inventoryID));
+    }
+
+    /**
+     * Records that inventory item `inventoryID` has been returned.
+     */
+    public void onReturn(int inventoryID) {
+        apply(target -> target.giveBack(inventoryID));
+    }
+
+    /**
+     * Records a new inventory item, which is in stock.
+     *
+     * @param title Title of the film. Only needed if the film is new
+     */
+    public void onInventoryAdded(int inventoryID, int storeID, int filmID, String title) {
+        apply(target -> {
+            if (title != null)
+                target.setTitle(filmID, title);
+            target.addInventory(inventoryID, storeID, filmID);
+        });
+    }
+
+    private void apply(Consumer<State> event) {
+        lock.writeLock().lock();
+        try {
+            event.accept(state);
+            if (pendingEvents != null)
+                pendingEvents.add(event);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns records for all films which are in stock in a store now, in
+     * the same order as `FilmsInStockQuery`. If the consistency check is on,
+     * the result is compared with the one from the database.
+     *
+     * @param storeID ID of store
+     * @return List of records
+     */
+    public ArrayList<FilmsInStock> run(int storeID) throws SQLException {
+        var result = runInMemory(storeID);
+        if (consistencyCheck && !result.equals(sqlQuery.run(storeID, LocalDateTime.now())))
+            numMismatches.incrementAndGet();
+        return result;
+    }
+
+    /**
+     * Answers from memory if `referenceDateTime` is null, otherwise runs
+     * `FilmsInStockQuery`.
+     *
+     * @param storeID ID of store
+     * @param referenceDateTime Reference time point, or null for now
+     * @return List of records
+     */
+    public ArrayList<FilmsInStock> run(int storeID, LocalDateTime referenceDateTime) throws SQLException {
+        return referenceDateTime == null ? run(storeID) : sqlQuery.run(storeID, referenceDateTime);
+    }
+
+    /**
+     * Compares the in-memory answer for a store with the one from the
+     * database. If `FilmsInStockQuery` is routed to a read replica which
+     * lags behind, recent events can show up as mismatches.
+     *
+     * @param storeID ID of store
+     * @return Are both answers the same?
+     */
+    public boolean verify(int storeID) throws SQLException {
+        var inMemory = runInMemory(storeID);
+        var fromDatabase = sqlQuery.run(storeID, LocalDateTime.now());
+        boolean consistent = inMemory.equals(fromDatabase);
+        if (!consistent)
+            numMismatches.incrementAndGet();
+        return consistent;
+    }
+
+    /**
+     * If switched on, every call of `run(storeID)` also runs the query on
+     * the database and counts mismatches, see `getNumMismatches`. This
+     * removes the performance benefit, and is meant for testing.
+     */
+    public void setConsistencyCheck(boolean consistencyCheck) {
+        this.consistencyCheck = consistencyCheck;
+    }
+
+    public long getNumMismatches() {
+        return numMismatches.get();
+    }
+
+    private ArrayList<FilmsInStock> runInMemory(int storeID) {
+        lock.readLock().lock();
+        try {
+            return state.filmsInStock(storeID);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param referenceTime If not null, bound to all "?" slots
+     */
+    private static SQLQuery query(String queryString, Timestamp referenceTime) {
+        return new SQLQuery() {
+            protected String getQueryString() {
+                return queryString;
+            }
+
+            protected void imputeParameters(PreparedStatement statement) throws SQLException {
+                if (referenceTime != null) {
+                    statement.setTimestamp(1, referenceTime);
+                    statement.setTimestamp(2, referenceTime);
+                }
+            }
+        };
+    }
+
+    /**
+     * Content of the view. Not thread-safe: `load` fills a new instance on
+     * its own, which is then only accessed with `lock`.
+     */
+    private static class State {
+        private final IntIntHashMap storeOfInventory = new IntIntHashMap();
+        private final IntIntHashMap filmOfInventory = new IntIntHashMap();
+        // Contains inventory items which are rented out, with value 1
+        private final IntIntHashMap rentedOut = new IntIntHashMap();
+        // Maps store ID to position in `stockPerStore`
+        private final IntIntHashMap storePositions = new IntIntHashMap();
+        // Maps film ID to number of items in stock, for each store
+        private final ArrayList<IntIntHashMap> stockPerStore = new ArrayList<>();
+        // Maps film ID to position in `titles`
+        private final IntIntHashMap titlePositions = new IntIntHashMap();
+        private final ArrayList<String> titles = new ArrayList<>();
+
+        private void setTitle(int filmID, String title) {
+            int position = titlePositions.getOrDefault(filmID, -1);
+            if (position < 0) {
+                titlePositions.put(filmID, titles.size());
+                titles.add(title);
+            } else {
+                titles.set(position, title);
+            }
+        }
+
+        private String titleOf(int filmID) {
+            int position = titlePositions.getOrDefault(filmID, -1);
+            return position < 0 ? null : titles.get(position);
+        }
+
+        private void addInventory(int inventoryID, int storeID, int filmID) {
+            if (filmOfInventory.containsKey(inventoryID))
+                return;
+            storeOfInventory.put(inventoryID, storeID);
+            filmOfInventory.put(inventoryID, filmID);
+            stockOf(storeID).addTo(filmID, 1);
+        }
+
+        private void rent(int inventoryID) {
+            if (filmOfInventory.containsKey(inventoryID) && rentedOut.get(inventoryID) == 0) {
+                rentedOut.put(inventoryID, 1);
+                stockOf(storeOfInventory.get(inventoryID)).addTo(filmOfInventory.get(inventoryID), -1);
+            }
+        }
+
+        private void giveBack(int inventoryID) {
+            if (filmOfInventory.containsKey(inventoryID) && rentedOut.get(inventoryID) == 1) {
+                rentedOut.put(inventoryID, 0);
+                stockOf(storeOfInventory.get(inventoryID)).addTo(filmOfInventory.get(inventoryID), 1);
+            }
+        }
+
+        private IntIntHashMap stockOf(int storeID) {
+            int position = storePositions.getOrDefault(storeID, -1);
+            if (position < 0) {
+                position = stockPerStore.size();
+                storePositions.put(storeID, position);
+                stockPerStore.add(new IntIntHashMap());
+            }
+            return stockPerStore.get(position);
+        }
+
+        private ArrayList<FilmsInStock> filmsInStock(int storeID) {
+            var result = new ArrayList<FilmsInStock>();
+            int position = storePositions.getOrDefault(storeID, -1);
+            if (position < 0)
+                return result;
+            var stock = stockPerStore.get(position);
+            int[] filmIDs = stock.keys();
+            Arrays.sort(filmIDs);
+            for (int filmID : filmIDs) {
+                int numInStock = stock.get(filmID);
+                if (numInStock > 0)
+                    result.add(new FilmsInStock(filmID, titleOf(filmID), numInStock));
+            }
+            return result;
+        }
+    }
+}
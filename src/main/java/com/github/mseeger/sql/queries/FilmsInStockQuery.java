@@ -1,28 +1,44 @@
 package com.github.mseeger.sql.queries;
 
+import com.github.mseeger.sql.KeysetPaginator;
 import com.github.mseeger.sql.QueryExecutor;
+import com.github.mseeger.sql.QueryLoader;
+import com.github.mseeger.sql.QueryResultCache;
+import com.github.mseeger.sql.QueryTemplate;
 import com.github.mseeger.sql.RowMapper;
 import com.github.mseeger.sql.SQLQuery;
+import com.github.mseeger.sql.SingleFlight;
 
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.TreeSet;
 
 public class FilmsInStockQuery {
-    private static final String queryString = """
+    /**
+     * Query for a single store. The "%s" are replaced by the seek predicate
+     * and limit of `pageTemplate`, or by nothing.
+     */
+    private static final String singleStoreQueryString = """
             WITH
             instock_inventory AS (
             SELECT DISTINCT ia.inventory_id
               FROM inventory AS ia
               LEFT JOIN (SELECT inventory_id
                            FROM rental
-                          WHERE rental_date <= ?
-                            AND (return_date IS NULL OR return_date > ?)
-                            AND store_id = ?) AS ir
+                          WHERE rental_date <= :referenceDateTime
+                            AND (return_date IS NULL OR return_date > :referenceDateTime)
+                            AND store_id = :storeID) AS ir
                 ON ia.inventory_id = ir.inventory_id
-             WHERE ia.store_id = ? AND ir.inventory_id IS NULL
+             WHERE ia.store_id = :storeID AND ir.inventory_id IS NULL%s
             )
             
             SELECT f.film_id, f.title, COUNT(*)
@@ -32,10 +48,72 @@ public class FilmsInStockQuery {
               JOIN film AS f
                 ON i.film_id = f.film_id
              GROUP BY f.film_id
-             ORDER BY f.film_id
+             ORDER BY f.film_id%s
+            """;
+    private static final QueryTemplate template = new QueryTemplate(
+            "FilmsInStockQuery",
+            singleStoreQueryString.formatted("", ""),
+            Map.of(
+                    "referenceDateTime", QueryTemplate.ParameterType.TIMESTAMP,
+                    "storeID", QueryTemplate.ParameterType.INT
+            ),
+            true
+    );
+    /**
+     * Used by `paginate`. The seek predicate is part of the CTE, so that
+     * a page only counts the films it returns.
+     */
+    private static final QueryTemplate pageTemplate = new QueryTemplate(
+            "FilmsInStockQueryPage",
+            singleStoreQueryString.formatted(
+                    "\n   AND ia.film_id > :afterKey",
+                    "\n LIMIT :pageSize"
+            ),
+            Map.of(
+                    "referenceDateTime", QueryTemplate.ParameterType.TIMESTAMP,
+                    "storeID", QueryTemplate.ParameterType.INT,
+                    KeysetPaginator.afterKeyParameter, QueryTemplate.ParameterType.LONG,
+                    KeysetPaginator.pageSizeParameter, QueryTemplate.ParameterType.INT
+            ),
+            true
+    );
+    private static final int referenceDateTimeParameter = template.indexOf("referenceDateTime");
+    private static final int storeIDParameter = template.indexOf("storeID");
+    // Used to recognize cache keys of a store
+    private static final int storeIDSlot = template.getSlots("storeID")[0];
+    /**
+     * Same as the query of `template`, but for several stores. The "%s" are replaced by
+     * lists of "?" slots for store IDs.
+     */
+    private static final String multiStoreQueryTemplate = """
+            WITH
+            instock_inventory AS (
+            SELECT DISTINCT ia.inventory_id, ia.store_id
+              FROM inventory AS ia
+              LEFT JOIN (SELECT inventory_id
+                           FROM rental
+                          WHERE rental_date <= ?
+                            AND (return_date IS NULL OR return_date > ?)
+                            AND store_id IN (%s)) AS ir
+                ON ia.inventory_id = ir.inventory_id
+             WHERE ia.store_id IN (%s) AND ir.inventory_id IS NULL
+            )
+            
+            SELECT ii.store_id, f.film_id, f.title, COUNT(*)
+              FROM inventory AS i
+              JOIN instock_inventory AS ii
+                ON i.inventory_id = ii.inventory_id
+              JOIN film AS f
+                ON i.film_id = f.film_id
+             GROUP BY ii.store_id, f.film_id
+             ORDER BY ii.store_id, f.film_id
             """;
-    private static final int[] storeIDIndices = {3};
-    private static final int[] referenceDateTimeIndices = {1, 2};
+    private static final int multiStoreFirstStoreIDIndex = 3;
+    /**
+     * Lists with more store IDs are split into several queries, which are run
+     * in parallel.
+     */
+    public static final int maxStoresPerQuery = 256;
     private static final RowMapper<FilmsInStock> rowMapper = resultSet ->
     {
         int filmID = resultSet.getInt(1);
@@ -43,11 +121,51 @@ public class FilmsInStockQuery {
         int numInStock = resultSet.getInt(3);
         return new FilmsInStock(filmID, title, numInStock);
     };
+    private static final RowMapper<StoreFilmsInStock> multiStoreRowMapper = resultSet ->
+    {
+        int storeID = resultSet.getInt(1);
+        int filmID = resultSet.getInt(2);
+        String title = resultSet.getString(3);
+        int numInStock = resultSet.getInt(4);
+        return new StoreFilmsInStock(storeID, new FilmsInStock(filmID, title, numInStock));
+    };
+
+    private record StoreFilmsInStock(int storeID, FilmsInStock record) {}
 
     private final QueryExecutor<FilmsInStock> queryExecutor;
+    private final QueryResultCache<FilmsInStock> cache;
+    private final SingleFlight<FilmsInStock> singleFlight;
+    private final QueryExecutor<StoreFilmsInStock> multiStoreQueryExecutor;
 
-    public FilmsInStockQuery(QueryExecutor<FilmsInStock> queryExecutor) {
+    /**
+     * @param queryExecutor Runs the query
+     * @param cache Optional. If given, results are cached here. Call
+     *              `invalidateStore` whenever rentals or returns are written
+     *              for a store
+     * @param singleFlight Optional. If given, concurrent calls of `run` with
+     *                     the same arguments (which miss the cache) share a
+     *                     single query execution
+     */
+    public FilmsInStockQuery(
+            QueryExecutor<FilmsInStock> queryExecutor,
+            QueryResultCache<FilmsInStock> cache,
+            SingleFlight<FilmsInStock> singleFlight
+    ) {
         this.queryExecutor = queryExecutor;
+        this.cache = cache;
+        this.singleFlight = singleFlight;
+        this.multiStoreQueryExecutor = queryExecutor.forRowType(StoreFilmsInStock.class);
+    }
+
+    public FilmsInStockQuery(
+            QueryExecutor<FilmsInStock> queryExecutor,
+            QueryResultCache<FilmsInStock> cache
+    ) {
+        this(queryExecutor, cache, null);
+    }
+
+    public FilmsInStockQuery(QueryExecutor<FilmsInStock> queryExecutor) {
+        this(queryExecutor, null, null);
     }
 
     /**
@@ -59,22 +177,132 @@ public class FilmsInStockQuery {
      * @return List of records
      */
     public ArrayList<FilmsInStock> run(int storeID, LocalDateTime referenceDateTime) throws SQLException {
-        class Query extends SQLQuery {
+        var query = singleStoreQuery(storeID, referenceDateTime);
+        QueryLoader<FilmsInStock> loader = singleFlight == null
+                ? () -> queryExecutor.run(query, rowMapper)
+                : () -> new ArrayList<>(singleFlight.run(query, () -> queryExecutor.run(query, rowMapper)));
+        if (cache == null)
+            return loader.load();
+        return cache.get(query, loader);
+    }
+
+    /**
+     * Same as `run(int, LocalDateTime)`, but returns records in pages of
+     * `pageSize`, using keyset pagination on the film ID. Pages are not
+     * cached.
+     *
+     * @param storeID ID of store
+     * @param referenceDateTime Reference time point
+     * @param pageSize Maximum number of records per page
+     * @return Paginator, see `KeysetPaginator.pages` and
+     * `KeysetPaginator.fetchPage`
+     */
+    public KeysetPaginator<FilmsInStock> paginate(
+            int storeID,
+            LocalDateTime referenceDateTime,
+            int pageSize
+    ) {
+        var query = pageTemplate.bind()
+                .setTimestamp("referenceDateTime", referenceDateTime)
+                .setInt("storeID", storeID);
+        return new KeysetPaginator<>(
+                queryExecutor,
+                query,
+                rowMapper,
+                FilmsInStock::getFilmID,
+                pageSize
+        );
+    }
+
+    private static SQLQuery singleStoreQuery(int storeID, LocalDateTime referenceDateTime) {
+        return template.bind()
+                .setTimestamp(referenceDateTimeParameter, referenceDateTime)
+                .setInt(storeIDParameter, storeID);
+    }
+
+    /**
+     * Returns records for all films which are in stock at a reference time
+     * point, for several stores. Stores are processed together by a single
+     * query, so that the cost does not grow with the number of round trips.
+     * If there are more than `maxStoresPerQuery` stores, they are split
+     * into several queries, which are run in parallel.
+     * <br>
+     * Results are not cached.
+     *
+     * @param storeIDs IDs of stores
+     * @param referenceDateTime Reference time point
+     * @return Maps each store ID to its list of records, sorted by store ID
+     */
+    public Map<Integer, ArrayList<FilmsInStock>> run(
+            Collection<Integer> storeIDs,
+            LocalDateTime referenceDateTime
+    ) throws SQLException {
+        var sortedStoreIDs = new ArrayList<>(new TreeSet<>(storeIDs));
+        var queries = new ArrayList<SQLQuery>();
+        for (int start = 0; start < sortedStoreIDs.size(); start += maxStoresPerQuery) {
+            var chunk = sortedStoreIDs.subList(
+                    start, Math.min(start + maxStoresPerQuery, sortedStoreIDs.size())
+            );
+            queries.add(multiStoreQuery(chunk, referenceDateTime));
+        }
+        var result = new TreeMap<Integer, ArrayList<FilmsInStock>>();
+        for (var storeID : sortedStoreIDs)
+            result.put(storeID, new ArrayList<>());
+        List<ArrayList<StoreFilmsInStock>> chunkResults = queries.size() == 1
+                ? List.of(multiStoreQueryExecutor.run(queries.getFirst(), multiStoreRowMapper))
+                : multiStoreQueryExecutor.runAll(queries, multiStoreRowMapper);
+        for (var chunkResult : chunkResults) {
+            for (var row : chunkResult)
+                result.get(row.storeID()).add(row.record());
+        }
+        return result;
+    }
+
+    /**
+     * The number of store ID slots is rounded up to a power of 2, by
+     * repeating the last ID, so that only a few distinct query strings
+     * are prepared.
+     */
+    private static SQLQuery multiStoreQuery(List<Integer> storeIDs, LocalDateTime referenceDateTime) {
+        int numSlots = storeIDs.size() == 1 ? 1 : 2 * Integer.highestOneBit(storeIDs.size() - 1);
+        var slots = String.join(", ", Collections.nCopies(numSlots, "?"));
+        var multiStoreQueryString = String.format(multiStoreQueryTemplate, slots, slots);
+        return new SQLQuery() {
             protected String getQueryString() {
-                return queryString;
+                return multiStoreQueryString;
+            }
+
+            @Override
+            public boolean isReadOnly() {
+                return true;
             }
 
             protected void imputeParameters(PreparedStatement statement) throws SQLException {
-                for (int index : storeIDIndices) {
-                    statement.setInt(index, storeID);
-                }
                 var refTimeStamp = Timestamp.valueOf(referenceDateTime);
-                for (int index : referenceDateTimeIndices) {
-                    statement.setTimestamp(index, refTimeStamp);
+                statement.setTimestamp(1, refTimeStamp);
+                statement.setTimestamp(2, refTimeStamp);
+                for (int i = 0; i < numSlots; i++) {
+                    int storeID = storeIDs.get(Math.min(i, storeIDs.size() - 1));
+                    statement.setInt(multiStoreFirstStoreIDIndex + i, storeID);
+                    statement.setInt(multiStoreFirstStoreIDIndex + numSlots + i, storeID);
                 }
             }
-        }
+        };
+    }
 
-        return queryExecutor.run(new Query(), rowMapper);
+    /**
+     * Removes all cached results for store `storeID`. Does nothing if there
+     * is no cache.
+     *
+     * @param storeID ID of store
+     * @return Number of cached results removed
+     */
+    public int invalidateStore(int storeID) {
+        if (cache == null)
+            return 0;
+        return cache.invalidateIf(key ->
+                key.getQueryString().equals(template.getQueryString())
+                        && Objects.equals(key.getParameter(storeIDSlot), storeID)
+        );
     }
 }
\ No newline at end of file
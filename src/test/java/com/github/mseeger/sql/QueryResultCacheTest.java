@@ -0,0 +1,154 @@
+package com.github.mseeger.sql;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class QueryResultCacheTest {
+    private static final QueryTemplate template = new QueryTemplate(
+            "Test",
+            "SELECT * FROM t WHERE id = :id",
+            Map.of("id", QueryTemplate.ParameterType.INT)
+    );
+    private static final QueryTemplate timeTemplate = new QueryTemplate(
+            "Test",
+            "SELECT * FROM t WHERE time <= :time",
+            Map.of("time", QueryTemplate.ParameterType.TIMESTAMP)
+    );
+
+    private int numLoads = 0;
+
+    private static SQLQuery query(int id) {
+        return template.bind().setInt("id", id);
+    }
+
+    private ArrayList<Integer> get(QueryResultCache<Integer> cache, SQLQuery query) throws SQLException {
+        int load = numLoads;
+        return cache.get(query, () -> {
+            numLoads++;
+            return new ArrayList<>(List.of(load));
+        });
+    }
+
+    @Test
+    void resultIsCachedPerKey() throws SQLException {
+        var cache = new QueryResultCache<Integer>(10, Duration.ofHours(1));
+        assertEquals(List.of(0), get(cache, query(1)));
+        assertEquals(List.of(0), get(cache, query(1)));
+        assertEquals(List.of(1), get(cache, query(2)));
+        assertEquals(2, numLoads);
+        assertEquals(new QueryResultCache.Statistics(1, 2, 0, 0, 2), cache.getStatistics());
+    }
+
+    @Test
+    void returnedListIsACopy() throws SQLException {
+        var cache = new QueryResultCache<Integer>(10, Duration.ofHours(1));
+        get(cache, query(1)).add(42);
+        assertEquals(List.of(0), get(cache, query(1)));
+    }
+
+    @Test
+    void leastRecentlyUsedEntryIsEvicted() throws SQLException {
+        var cache = new QueryResultCache<Integer>(2, Duration.ofHours(1));
+        get(cache, query(1));
+        get(cache, query(2));
+        // Makes 2 the least recently used entry
+        get(cache, query(1));
+        get(cache, query(3));
+        assertEquals(2, cache.size());
+        assertEquals(3, numLoads);
+        get(cache, query(1));
+        assertEquals(3, numLoads);
+        get(cache, query(2));
+        assertEquals(4, numLoads);
+        var statistics = cache.getStatistics();
+        assertEquals(2, statistics.evictions());
+        assertEquals(2, statistics.hits());
+    }
+
+    @Test
+    void expiredEntryIsReloaded() throws SQLException {
+        long[] now = {0};
+        var cache = new QueryResultCache<Integer>(10, Duration.ofMillis(20), Duration.ZERO, () -> now[0]);
+        assertEquals(List.of(0), get(cache, query(1)));
+        now[0] += Duration.ofMillis(20).toNanos();
+        assertEquals(List.of(0), get(cache, query(1)));
+        now[0] += 1;
+        assertEquals(List.of(1), get(cache, query(1)));
+        assertEquals(List.of(1), get(cache, query(1)));
+        var statistics = cache.getStatistics();
+        assertEquals(1, statistics.expirations());
+        assertEquals(0, statistics.evictions());
+        assertEquals(1, statistics.size());
+    }
+
+    @Test
+    void invalidatedEntriesAreReloaded() throws SQLException {
+        var cache = new QueryResultCache<Integer>(10, Duration.ofHours(1));
+        get(cache, query(1));
+        get(cache, query(2));
+        assertEquals(1, cache.invalidateIf(key -> Integer.valueOf(1).equals(key.getParameter(1))));
+        get(cache, query(1));
+        get(cache, query(2));
+        assertEquals(3, numLoads);
+        cache.invalidateAll();
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void resultIsNotCachedIfInvalidatedWhileLoading() throws SQLException {
+        var cache = new QueryResultCache<Integer>(10, Duration.ofHours(1));
+        cache.get(query(1), () -> {
+            cache.invalidateAll();
+            return new ArrayList<>(List.of(0));
+        });
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void timeStampsAreRoundedToBucket() throws SQLException {
+        var cache = new QueryResultCache<Integer>(10, Duration.ofHours(1), Duration.ofMinutes(1));
+        var time = LocalDateTime.of(2005, 6, 1, 12, 0);
+        get(cache, timeTemplate.bind().setTimestamp("time", time.plusSeconds(5)));
+        get(cache, timeTemplate.bind().setTimestamp("time", time.plusSeconds(55)));
+        assertEquals(1, numLoads);
+        get(cache, timeTemplate.bind().setTimestamp("time", time.plusSeconds(65)));
+        assertEquals(2, numLoads);
+        var key = cache.keyFor(timeTemplate.bind().setTimestamp("time", time.plusSeconds(30)));
+        assertEquals(Timestamp.valueOf(time), key.getParameter(1));
+    }
+
+    @Test
+    void subSecondBucketIsNotTruncated() throws SQLException {
+        var cache = new QueryResultCache<Integer>(10, Duration.ofHours(1), Duration.ofMillis(500));
+        var time = LocalDateTime.of(2005, 6, 1, 12, 0);
+        var key = cache.keyFor(timeTemplate.bind().setTimestamp("time", time.plusNanos(700_000_000)));
+        assertEquals(Timestamp.valueOf(time.plusNanos(500_000_000)), key.getParameter(1));
+    }
+
+    @Test
+    void invalidTimeBucketIsRejected() {
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> new QueryResultCache<Integer>(10, Duration.ofHours(1), Duration.ofNanos(1))
+        );
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> new QueryResultCache<Integer>(10, Duration.ofHours(1), Duration.ofSeconds(-1))
+        );
+    }
+
+    @Test
+    void invalidMaxSizeIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new QueryResultCache<Integer>(0, Duration.ofHours(1)));
+    }
+}
@@ -0,0 +1,206 @@
+package com.github.mseeger.sql;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class QueryTemplateTest {
+    private static final Map<String, QueryTemplate.ParameterType> intParameterA =
+            Map.of("a", QueryTemplate.ParameterType.INT);
+
+    private static String parse(String namedQueryString) {
+        return new QueryTemplate("Test", namedQueryString, intParameterA).getQueryString();
+    }
+
+    @Test
+    void placeholdersAreRewrittenToSlots() {
+        var template = new QueryTemplate(
+                "Test",
+                "SELECT * FROM t WHERE a = :a AND b > :b AND c < :a",
+                Map.of(
+                        "a", QueryTemplate.ParameterType.INT,
+                        "b", QueryTemplate.ParameterType.STRING
+                )
+        );
+        assertEquals("SELECT * FROM t WHERE a = ? AND b > ? AND c < ?", template.getQueryString());
+        assertEquals(2, template.getNumParameters());
+        assertEquals(0, template.indexOf("a"));
+        assertEquals(1, template.indexOf("b"));
+        assertArrayEquals(new int[]{1, 3}, template.getSlots("a"));
+        assertArrayEquals(new int[]{2}, template.getSlots("b"));
+    }
+
+    @Test
+    void placeholdersInQuotesAreIgnored() {
+        assertEquals(
+                "SELECT ':b', \":b\", `:b` FROM t WHERE a = ?",
+                parse("SELECT ':b', \":b\", `:b` FROM t WHERE a = :a")
+        );
+    }
+
+    @Test
+    void escapedQuotesDoNotEndLiterals() {
+        assertEquals(
+                "SELECT 'it\\'s :b', 'it''s :b', \"say \\\":b\\\"\" FROM t WHERE a = ?",
+                parse("SELECT 'it\\'s :b', 'it''s :b', \"say \\\":b\\\"\" FROM t WHERE a = :a")
+        );
+    }
+
+    @Test
+    void backslashDoesNotEscapeInBackticks() {
+        assertEquals("SELECT `c\\` FROM t WHERE a = ?", parse("SELECT `c\\` FROM t WHERE a = :a"));
+    }
+
+    @Test
+    void placeholdersInCommentsAreIgnored() {
+        assertEquals(
+                "SELECT a -- :b\nFROM t # :b\nWHERE /* :b */ a = ?",
+                parse("SELECT a -- :b\nFROM t # :b\nWHERE /* :b */ a = :a")
+        );
+        assertEquals("SELECT ? -- :b", parse("SELECT :a -- :b"));
+        assertEquals("SELECT ? /* :b", parse("SELECT :a /* :b"));
+    }
+
+    @Test
+    void castsAndAssignmentsAreNoPlaceholders() {
+        assertEquals("SELECT ?::text, c::int FROM t", parse("SELECT :a::text, c::int FROM t"));
+        assertEquals("SET @x := ?", parse("SET @x := :a"));
+    }
+
+    @Test
+    void questionMarkIsRejected() {
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> parse("SELECT * FROM t WHERE a = :a AND b = ?")
+        );
+        assertEquals("SELECT '?' FROM t WHERE a = ?", parse("SELECT '?' FROM t WHERE a = :a"));
+    }
+
+    @Test
+    void undeclaredOrUnusedParametersAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> parse("SELECT :a, :b"));
+        assertThrows(IllegalArgumentException.class, () -> parse("SELECT 1"));
+        assertThrows(IllegalArgumentException.class, () -> parse("SELECT ':a'"));
+    }
+
+    @Test
+    void unknownParameterName() {
+        var template = new QueryTemplate("Test", "SELECT :a", intParameterA);
+        assertThrows(NoSuchElementException.class, () -> template.indexOf("b"));
+        assertThrows(NoSuchElementException.class, () -> template.bind().setInt("b", 1));
+    }
+
+    @Test
+    void boundValuesAreSetForAllSlots() throws SQLException {
+        var template = new QueryTemplate(
+                "Test",
+                "SELECT * FROM t WHERE a = :a AND b = :b AND c = :c AND d = :d AND e = :e AND a2 = :a",
+                Map.of(
+                        "a", QueryTemplate.ParameterType.INT,
+                        "b", QueryTemplate.ParameterType.LONG,
+                        "c", QueryTemplate.ParameterType.DOUBLE,
+                        "d", QueryTemplate.ParameterType.STRING,
+                        "e", QueryTemplate.ParameterType.TIMESTAMP
+                )
+        );
+        var time = LocalDateTime.of(2005, 6, 1, 12, 0);
+        var query = template.bind()
+                .setInt("a", 7)
+                .setLong("b", 1L << 40)
+                .setDouble("c", 0.5)
+                .setString("d", "x")
+                .setTimestamp("e", time);
+        assertEquals(
+                List.of(7, 1L << 40, 0.5, "x", Timestamp.valueOf(time), 7),
+                QueryKey.of(query).getParameters()
+        );
+        assertEquals("Test", query.getName());
+        assertEquals(template.getQueryString(), query.getQueryString());
+    }
+
+    @Test
+    void timestampIsSetAsTimestamp() throws SQLException {
+        var template = new QueryTemplate(
+                "Test", "SELECT :e", Map.of("e", QueryTemplate.ParameterType.TIMESTAMP)
+        );
+        var time = LocalDateTime.of(2005, 6, 1, 12, 0);
+        var calls = new ArrayList<String>();
+        var statement = (PreparedStatement) Proxy.newProxyInstance(
+                PreparedStatement.class.getClassLoader(),
+                new Class<?>[]{PreparedStatement.class},
+                (proxy, method, args) -> {
+                    calls.add(method.getName() + Arrays.toString(args));
+                    return null;
+                }
+        );
+        template.bind().setTimestamp("e", time).imputeParameters(statement);
+        assertEquals(List.of("setTimestamp[1, " + Timestamp.valueOf(time) + "]"), calls);
+    }
+
+    @Test
+    void nullValuesAreSetAsNull() throws SQLException {
+        var template = new QueryTemplate(
+                "Test",
+                "SELECT :d, :e",
+                Map.of(
+                        "d", QueryTemplate.ParameterType.STRING,
+                        "e", QueryTemplate.ParameterType.TIMESTAMP
+                )
+        );
+        var query = template.bind().setString("d", null).setTimestamp("e", null);
+        assertEquals(Arrays.asList(null, null), QueryKey.of(query).getParameters());
+    }
+
+    @Test
+    void setterOfWrongTypeIsRejected() {
+        var template = new QueryTemplate("Test", "SELECT :a", intParameterA);
+        var query = template.bind();
+        assertThrows(IllegalArgumentException.class, () -> query.setLong("a", 1));
+        assertThrows(IllegalArgumentException.class, () -> query.setString(0, "1"));
+    }
+
+    @Test
+    void unsetParameterIsRejected() {
+        var template = new QueryTemplate(
+                "Test",
+                "SELECT :a, :b",
+                Map.of(
+                        "a", QueryTemplate.ParameterType.INT,
+                        "b", QueryTemplate.ParameterType.INT
+                )
+        );
+        var query = template.bind().setInt("a", 1);
+        assertThrows(IllegalStateException.class, () -> QueryKey.of(query));
+    }
+
+    @Test
+    void copyKeepsValuesAndIsIndependent() throws SQLException {
+        var template = new QueryTemplate(
+                "Test",
+                "SELECT :a, :b",
+                Map.of(
+                        "a", QueryTemplate.ParameterType.INT,
+                        "b", QueryTemplate.ParameterType.INT
+                )
+        );
+        var query = template.bind().setInt("a", 1);
+        var copy = query.copy().setInt("b", 2);
+        assertNotSame(query, copy);
+        assertEquals(List.of(1, 2), QueryKey.of(copy).getParameters());
+        assertThrows(IllegalStateException.class, () -> QueryKey.of(query));
+    }
+}